@@ -0,0 +1,284 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The class Benchmark is a self-contained harness that measures key generation, encryption and decryption.
+ * For every combination of vector length, message length and MinSeed:MaxSeed range, it runs a warmup phase and then a timed
+ * phase per operation.  It reports throughput, latency percentiles and bytes allocated per operation, read from the JVM's
+ * per-thread allocation counter.
+ * Results can be saved as a baseline file and compared against a later run, so a change can be checked against the commit before it.
+ *
+ * Usage: java Benchmark [--lengths 64,640,4096] [--messages 8,80] [--seeds 1:5,1:100]
+ *                       [--warmup MS] [--measure MS] [--save FILE] [--compare FILE] [--parallel CUTOFF_BITS]
+ *                       [--check-alloc SLACK_BYTES]
+ * With --parallel, messages longer than the cutoff are also encrypted with a ParallelEncryptor on the common pool.
+ * With --check-alloc, encryption and decryption are also run through one reused CipherWorkspace.  The run exits with status 1
+ * if workspace encryption allocates more per call than its resulting BigInteger plus SLACK_BYTES, or workspace decryption
+ * from a BigInteger or from ciphertext bytes, whose result goes into a caller buffer, allocates more than SLACK_BYTES.
+ */
+public class Benchmark {
+
+	/**
+     *Sink for benchmark results so the JIT cannot discard the work being measured.
+     */
+    static volatile long sink;
+
+    /**
+     *Maximum number of per-operation latency samples kept for the percentile report.
+     */
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    /**
+     *The operation under test: runs once per call with a fresh input index.
+     */
+    interface Operation {
+        void run(int i);
+    }
+
+    /**
+     *Main method: parses options, runs every configuration and prints one line per measured operation.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for(int i = 0; i + 1 < args.length; i += 2){
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int[] lengths = parseInts(options.getOrDefault("lengths", "64,640,4096"));
+        int[] messages = parseInts(options.getOrDefault("messages", "8,80"));
+        String[] seeds = options.getOrDefault("seeds", "1:5").split(",");
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "1000"));
+        long measure = Long.parseLong(options.getOrDefault("measure", "2000"));
+        int parallelCutoff = Integer.parseInt(options.getOrDefault("parallel", "0"));
+        long allocationSlack = Long.parseLong(options.getOrDefault("check-alloc", "-1"));
+        List<String> allocationFailures = new ArrayList<>();
+
+        Map<String, Double> results = new LinkedHashMap<>();
+        System.out.printf("%-44s %14s %10s %10s %10s %10s %12s%n",
+                "benchmark", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "B/op");
+
+        for(String seed : seeds){
+            String[] range = seed.split(":");
+            int min = Integer.parseInt(range[0]);
+            int max = Integer.parseInt(range[1]);
+            for(int length : lengths){
+                String keyName = "n=" + length + ",seed=" + seed;
+                SplittableRandom random = new SplittableRandom(length);
+                measure("keygen " + keyName, warmup, measure, results, i -> {
+                    MerkleHellman newMK = new MerkleHellman(min, max, length, random);
+                    newMK.createw();
+                    newMK.createb();
+                    sink += newMK.returnbVector().get(0).hashCode();
+                });
+
+                MerkleHellman newMK = new MerkleHellman(min, max, length, random);
+                newMK.createw();
+                newMK.createb();
+                MerkleHellmanKey key = newMK.toKey();
+                for(int messageLength : messages){
+                    if(messageLength > key.returnBlockBytes()){
+                        continue;
+                    }
+                    byte[][] inputs = new byte[256][messageLength];
+                    BigInteger[] ciphertexts = new BigInteger[inputs.length];
+                    for(int j = 0; j < inputs.length; j++){
+                        random.nextBytes(inputs[j]);
+                        ciphertexts[j] = key.encrypt(inputs[j]);
+                    }
+                    String name = keyName + ",msg=" + messageLength;
+                    measure("encrypt " + name, warmup, measure, results,
+                            i -> sink += key.encrypt(inputs[i & 255]).hashCode());
+                    if(parallelCutoff > 0 && 8 * messageLength > parallelCutoff){
+                        ParallelEncryptor parallel = new ParallelEncryptor(key, ForkJoinPool.commonPool(), parallelCutoff);
+                        measure("encrypt-parallel " + name, warmup, measure, results,
+                                i -> sink += parallel.encrypt(inputs[i & 255]).hashCode());
+                    }
+                    measure("decrypt " + name, warmup, measure, results,
+                            i -> sink += key.decrypt(ciphertexts[i & 255])[0]);
+                    if(allocationSlack >= 0){
+                        CipherWorkspace workspace = new CipherWorkspace();
+                        byte[] plain = new byte[key.returnBlockBytes()];
+                        long allowed = resultBytes(ciphertexts) + allocationSlack;
+                        long allocated = measure("encrypt-workspace " + name, warmup, measure, results,
+                                i -> sink += key.encrypt(inputs[i & 255], workspace).hashCode());
+                        long decryptAllocated = measure("decrypt-workspace " + name, warmup, measure, results,
+                                i -> sink += key.decrypt(ciphertexts[i & 255], workspace, plain, 0) + plain[0]);
+                        if(allocated > allowed){
+                            allocationFailures.add("encrypt-workspace " + name + ": " + allocated + " B/op, allowed " + allowed);
+                        }
+                        byte[][] encoded = new byte[ciphertexts.length][];
+                        for(int j = 0; j < encoded.length; j++){
+                            encoded[j] = ciphertexts[j].toByteArray();
+                        }
+                        long bytesAllocated = measure("decrypt-workspace-bytes " + name, warmup, measure, results, i -> {
+                            byte[] ciphertext = encoded[i & 255];
+                            sink += key.decrypt(ciphertext, 0, ciphertext.length, workspace, plain, 0) + plain[0];
+                        });
+                        if(decryptAllocated > allocationSlack){
+                            allocationFailures.add("decrypt-workspace " + name + ": " + decryptAllocated + " B/op, allowed " + allocationSlack);
+                        }
+                        if(bytesAllocated > allocationSlack){
+                            allocationFailures.add("decrypt-workspace-bytes " + name + ": " + bytesAllocated + " B/op, allowed " + allocationSlack);
+                        }
+                    }
+                }
+            }
+        }
+
+        if(options.containsKey("compare")){
+            compare(Paths.get(options.get("compare")), results);
+        }
+        if(options.containsKey("save")){
+            save(Paths.get(options.get("save")), results);
+        }
+        if(!allocationFailures.isEmpty()){
+            for(String failure : allocationFailures){
+                System.err.println("Allocation check failed: " + failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    /**
+     *Method to warm up and then time one operation, printing its line and recording its throughput under name.
+     *Post-Condition: returns the bytes allocated per call, or -1 if the JVM does not count allocations.
+     */
+    static long measure(String name, long warmupMillis, long measureMillis, Map<String, Double> results, Operation op){
+        run(op, warmupMillis, null);
+        long[] samples = new long[MAX_SAMPLES];
+        com.sun.management.ThreadMXBean threads = allocationBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads == null ? 0 : threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int count = run(op, measureMillis, samples);
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads == null ? -1 : threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        long[] sorted = Arrays.copyOf(samples, Math.min(count, MAX_SAMPLES));
+        Arrays.sort(sorted);
+        double opsPerSecond = count * 1e9 / elapsed;
+        results.put(name, opsPerSecond);
+        System.out.printf("%-44s %14.1f %10.2f %10.2f %10.2f %10.2f %12s%n", name, opsPerSecond,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                allocated < 0 ? "n/a" : Long.toString(allocated / Math.max(1, count)));
+        return allocated < 0 ? -1 : allocated / Math.max(1, count);
+    }
+
+    /**
+     *Method to estimate the heap size of the largest of the given BigIntegers with KeyVector.estimateBytes.
+     */
+    private static long resultBytes(BigInteger[] values){
+        int bits = 0;
+        for(BigInteger value : values){
+            bits = Math.max(bits, value.bitLength());
+        }
+        return KeyVector.estimateBytes(bits);
+    }
+
+    /**
+     *Method to call op repeatedly for the given time, recording each call's latency in samples when it is non-null.
+     *Post-Condition: returns the number of calls made.
+     */
+    private static int run(Operation op, long millis, long[] samples){
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        int count = 0;
+        long now = System.nanoTime();
+        while(now < deadline){
+            op.run(count);
+            long after = System.nanoTime();
+            if(samples != null && count < samples.length){
+                samples[count] = after - now;
+            }
+            now = after;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     *Method to return the latency at quantile p of the sorted samples, in microseconds.
+     */
+    private static double percentile(long[] sorted, double p){
+        if(sorted.length == 0){
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    /**
+     *Method to return the JVM's thread allocation counter, or null if this JVM does not provide one.
+     */
+    static com.sun.management.ThreadMXBean allocationBean(){
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean){
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if(threads.isThreadAllocatedMemorySupported()){
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     *Method to write the throughput of every benchmark to a tab-separated baseline file.
+     */
+    private static void save(Path path, Map<String, Double> results) throws IOException {
+        try(BufferedWriter out = Files.newBufferedWriter(path)){
+            for(Map.Entry<String, Double> entry : results.entrySet()){
+                out.write(entry.getKey() + "\t" + entry.getValue());
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     *Method to print the change in throughput against a baseline file written by save.
+     */
+    private static void compare(Path path, Map<String, Double> results) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        try(BufferedReader in = Files.newBufferedReader(path)){
+            String line;
+            while((line = in.readLine()) != null){
+                int tab = line.indexOf('\t');
+                if(tab > 0){
+                    baseline.put(line.substring(0, tab), Double.parseDouble(line.substring(tab + 1)));
+                }
+            }
+        }
+        System.out.println();
+        System.out.printf("%-44s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for(Map.Entry<String, Double> entry : results.entrySet()){
+            Double before = baseline.get(entry.getKey());
+            if(before != null){
+                System.out.printf("%-44s %14.1f %14.1f %+8.1f%%%n", entry.getKey(), before, entry.getValue(),
+                        100.0 * (entry.getValue() - before) / before);
+            }
+        }
+    }
+
+    /**
+     *Private method to parse a comma-separated list of integers.
+     */
+    private static int[] parseInts(String list){
+        List<Integer> values = new ArrayList<>();
+        for(String part : list.split(",")){
+            values.add(Integer.parseInt(part.trim()));
+        }
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,363 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The class BlockStream encrypts and decrypts input of any length with a MerkleHellmanKey by splitting it into blocks of
+ * returnBlockBytes() bytes, vectorlength / 8, and encrypting each block into its own ciphertext.
+ * Every block is written as a record: plaintext length (int), ciphertext length (int), ciphertext bytes (two's complement).
+ * Only the final block may have a plaintext length below the block size, so decryption restores the input exactly.
+ * Decryption rejects a short block followed by another record, and a ciphertext longer than the key can produce.
+ * Only one block is held in memory at a time, whatever the size of the input.
+ * encryptBatch and decryptBatch instead use the CiphertextCodec batch container, which stores lengths as varints and
+ * records the key id, saving about 7 bytes per block.
+ */
+public class BlockStream {
+
+	/**
+     *Size of the buffers wrapped around caller streams.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     *Number of blocks read, processed in parallel and written together by the ForkJoinPool variants.
+     */
+    static final int BATCH_BLOCKS = 4096;
+
+    /**
+     *Private constructor; BlockStream only has static methods.
+     */
+    private BlockStream(){
+    }
+
+    /**
+     *Method to encrypt everything readable from in and write the block records to out.
+     *Pre-Condition: in and out must be open.  Neither is closed by this method; out is flushed.
+     *Post-Condition: returns the number of blocks written.
+     *Theta(N), linear in the length of the input.
+     */
+    public static long encrypt(MerkleHellmanKey key, InputStream in, OutputStream out) throws IOException {
+        int blockBytes = key.returnBlockBytes();
+        byte[] block = new byte[blockBytes];
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        long blocks = 0;
+        int read;
+        while((read = in.readNBytes(block, 0, blockBytes)) > 0){
+            byte[] message = read < blockBytes ? Arrays.copyOf(block, read) : block;
+            writeRecord(data, read, key.encrypt(message));
+            blocks++;
+            if(read < blockBytes){
+                break;
+            }
+        }
+        data.flush();
+        return blocks;
+    }
+
+    /**
+     *Method to decrypt block records readable from in and write the recovered bytes to out.
+     *Pre-Condition: in must hold records written by encrypt with the same key.  Neither stream is closed; out is flushed.
+     *Post-Condition: returns the number of blocks read.  Throws EOFException if the last record is cut short and
+     *IOException if a record has an invalid length or follows a short block.
+     *Theta(N), linear in the length of the input.
+     */
+    public static long decrypt(MerkleHellmanKey key, InputStream in, OutputStream out) throws IOException {
+        int blockBytes = key.returnBlockBytes();
+        int maxBytes = maxCiphertextBytes(key);
+        byte[] block = new byte[blockBytes];
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        OutputStream sink = new BufferedOutputStream(out, BUFFER_SIZE);
+        long blocks = 0;
+        boolean ended = false;
+        int plainLength;
+        while((plainLength = readPlainLength(data, blockBytes)) >= 0){
+            ended = checkOrder(ended, plainLength, blockBytes);
+            key.decrypt(readCiphertext(data, maxBytes), block, 0);
+            sink.write(block, 0, plainLength);
+            blocks++;
+        }
+        sink.flush();
+        return blocks;
+    }
+
+    /**
+     *Method to encrypt like encrypt(MerkleHellmanKey, InputStream, OutputStream), but BATCH_BLOCKS blocks at a time on a ForkJoinPool.
+     *Produces exactly the same records.  Memory use is bounded by one batch.
+     *Post-Condition: returns the number of blocks written.
+     */
+    public static long encrypt(MerkleHellmanKey key, InputStream in, OutputStream out, ForkJoinPool pool) throws IOException {
+        int blockBytes = key.returnBlockBytes();
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        byte[][] batch = new byte[BATCH_BLOCKS][];
+        long blocks = 0;
+        boolean done = false;
+        while(!done){
+            int count = 0;
+            while(count < BATCH_BLOCKS){
+                byte[] block = in.readNBytes(blockBytes);
+                if(block.length > 0){
+                    batch[count++] = block;
+                }
+                if(block.length < blockBytes){
+                    done = true;
+                    break;
+                }
+            }
+            BigInteger[] ciphertexts = key.encryptAll(Arrays.copyOf(batch, count), pool);
+            for(int i = 0; i < count; i++){
+                writeRecord(data, batch[i].length, ciphertexts[i]);
+            }
+            blocks += count;
+        }
+        data.flush();
+        return blocks;
+    }
+
+    /**
+     *Method to decrypt like decrypt(MerkleHellmanKey, InputStream, OutputStream), but BATCH_BLOCKS blocks at a time on a ForkJoinPool.
+     *Post-Condition: returns the number of blocks read.
+     */
+    public static long decrypt(MerkleHellmanKey key, InputStream in, OutputStream out, ForkJoinPool pool) throws IOException {
+        int blockBytes = key.returnBlockBytes();
+        int maxBytes = maxCiphertextBytes(key);
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        OutputStream sink = new BufferedOutputStream(out, BUFFER_SIZE);
+        BigInteger[] ciphertexts = new BigInteger[BATCH_BLOCKS];
+        int[] lengths = new int[BATCH_BLOCKS];
+        long blocks = 0;
+        boolean ended = false;
+        boolean done = false;
+        while(!done){
+            int count = 0;
+            while(count < BATCH_BLOCKS){
+                int plainLength = readPlainLength(data, blockBytes);
+                if(plainLength < 0){
+                    done = true;
+                    break;
+                }
+                ended = checkOrder(ended, plainLength, blockBytes);
+                lengths[count] = plainLength;
+                ciphertexts[count++] = readCiphertext(data, maxBytes);
+            }
+            byte[][] plain = key.decryptAll(Arrays.copyOf(ciphertexts, count), pool);
+            for(int i = 0; i < count; i++){
+                sink.write(plain[i], 0, lengths[i]);
+            }
+            blocks += count;
+        }
+        sink.flush();
+        return blocks;
+    }
+
+    /**
+     *Method to encrypt everything readable from in into the CiphertextCodec batch container, labelled with keyId.
+     *Blocks are read BATCH_BLOCKS at a time and, when pool is non-null, encrypted in parallel on it.
+     *Pre-Condition: in and out must be open.  Neither is closed by this method; out is flushed.
+     *Post-Condition: returns the number of blocks written.
+     *Theta(N), linear in the length of the input.
+     */
+    public static long encryptBatch(MerkleHellmanKey key, String keyId, InputStream in, OutputStream out, ForkJoinPool pool) throws IOException {
+        int blockBytes = key.returnBlockBytes();
+        CiphertextCodec.Writer writer = new CiphertextCodec.Writer(out, keyId, BATCH_BLOCKS);
+        byte[][] batch = new byte[BATCH_BLOCKS][];
+        boolean done = false;
+        while(!done){
+            int count = 0;
+            while(count < BATCH_BLOCKS){
+                byte[] block = in.readNBytes(blockBytes);
+                if(block.length > 0){
+                    batch[count++] = block;
+                }
+                if(block.length < blockBytes){
+                    done = true;
+                    break;
+                }
+            }
+            if(pool != null){
+                BigInteger[] ciphertexts = key.encryptAll(Arrays.copyOf(batch, count), pool);
+                for(int i = 0; i < count; i++){
+                    writer.write(batch[i].length, ciphertexts[i]);
+                }
+            } else {
+                for(int i = 0; i < count; i++){
+                    writer.write(batch[i].length, key.encrypt(batch[i]));
+                }
+            }
+        }
+        writer.flush();
+        return writer.returnCount();
+    }
+
+    /**
+     *Method to decrypt a CiphertextCodec batch container written by encryptBatch and write the recovered bytes to out.
+     *Pre-Condition: every frame must carry keyId and have been encrypted with key.  Neither stream is closed; out is flushed.
+     *Post-Condition: returns the number of blocks read.  Throws IOException if a frame names another key, a block
+     *length exceeds the block size, a ciphertext is longer than the key can produce or a short block is followed by
+     *another block.
+     *Theta(N), linear in the length of the input.  Ciphertexts are decrypted from their bytes in the thread's workspace,
+     *so no BigInteger is built.
+     */
+    public static long decryptBatch(MerkleHellmanKey key, String keyId, InputStream in, OutputStream out) throws IOException {
+        int blockBytes = key.returnBlockBytes();
+        byte[] block = new byte[blockBytes];
+        CiphertextCodec.Reader reader = new CiphertextCodec.Reader(in, maxCiphertextBytes(key));
+        CipherWorkspace workspace = CipherWorkspace.forThread();
+        OutputStream sink = new BufferedOutputStream(out, BUFFER_SIZE);
+        long blocks = 0;
+        boolean ended = false;
+        while(reader.next()){
+            if(!keyId.equals(reader.returnKeyId())){
+                throw new IOException("Ciphertext was written for key " + reader.returnKeyId() + ", not " + keyId + ".");
+            }
+            int plainLength = reader.returnPlainLength();
+            if(plainLength > blockBytes){
+                throw new IOException("Invalid block length " + plainLength + ".");
+            }
+            ended = checkOrder(ended, plainLength, blockBytes);
+            key.decrypt(reader.returnCiphertext(), 0, reader.returnCiphertextLength(), workspace, block, 0);
+            sink.write(block, 0, plainLength);
+            blocks++;
+        }
+        sink.flush();
+        return blocks;
+    }
+
+    /**
+     *Method to decrypt like decryptBatch(MerkleHellmanKey, String, InputStream, OutputStream), but BATCH_BLOCKS blocks at a
+     *time on a ForkJoinPool, or serially when pool is null.  Ciphertext bytes and recovered blocks are held in two buffers
+     *reused across batches, and each worker decrypts in its own thread's workspace.
+     *Post-Condition: returns the number of blocks read.
+     */
+    public static long decryptBatch(MerkleHellmanKey key, String keyId, InputStream in, OutputStream out, ForkJoinPool pool) throws IOException {
+        if(pool == null){
+            return decryptBatch(key, keyId, in, out);
+        }
+        int blockBytes = key.returnBlockBytes();
+        int maxBytes = maxCiphertextBytes(key);
+        CiphertextCodec.Reader reader = new CiphertextCodec.Reader(in, maxBytes);
+        OutputStream sink = new BufferedOutputStream(out, BUFFER_SIZE);
+        byte[] ciphertexts = new byte[BATCH_BLOCKS * maxBytes];
+        byte[] plain = new byte[BATCH_BLOCKS * blockBytes];
+        int[] sizes = new int[BATCH_BLOCKS];
+        int[] lengths = new int[BATCH_BLOCKS];
+        long blocks = 0;
+        boolean ended = false;
+        boolean done = false;
+        while(!done){
+            int count = 0;
+            while(count < BATCH_BLOCKS){
+                if(!reader.next()){
+                    done = true;
+                    break;
+                }
+                if(!keyId.equals(reader.returnKeyId())){
+                    throw new IOException("Ciphertext was written for key " + reader.returnKeyId() + ", not " + keyId + ".");
+                }
+                int plainLength = reader.returnPlainLength();
+                if(plainLength > blockBytes){
+                    throw new IOException("Invalid block length " + plainLength + ".");
+                }
+                ended = checkOrder(ended, plainLength, blockBytes);
+                lengths[count] = plainLength;
+                sizes[count] = reader.returnCiphertextLength();
+                System.arraycopy(reader.returnCiphertext(), 0, ciphertexts, count * maxBytes, sizes[count]);
+                count++;
+            }
+            int batch = count;
+            pool.submit(() -> IntStream.range(0, batch).parallel().forEach(i -> key.decrypt(ciphertexts, i * maxBytes,
+                    sizes[i], CipherWorkspace.forThread(), plain, i * blockBytes))).join();
+            for(int i = 0; i < count; i++){
+                sink.write(plain, i * blockBytes, lengths[i]);
+            }
+            blocks += count;
+        }
+        sink.flush();
+        return blocks;
+    }
+
+    /**
+     *Method to encrypt from a ReadableByteChannel to a WritableByteChannel.  See encrypt(MerkleHellmanKey, InputStream, OutputStream).
+     */
+    public static long encrypt(MerkleHellmanKey key, ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        return encrypt(key, Channels.newInputStream(in), Channels.newOutputStream(out));
+    }
+
+    /**
+     *Method to decrypt from a ReadableByteChannel to a WritableByteChannel.  See decrypt(MerkleHellmanKey, InputStream, OutputStream).
+     */
+    public static long decrypt(MerkleHellmanKey key, ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        return decrypt(key, Channels.newInputStream(in), Channels.newOutputStream(out));
+    }
+
+    /**
+     *Package-private method to write one block record.
+     */
+    static void writeRecord(DataOutputStream data, int plainLength, BigInteger ciphertext) throws IOException {
+        byte[] bytes = ciphertext.toByteArray();
+        data.writeInt(plainLength);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /**
+     *Package-private method to read the plaintext length that starts a record.
+     *Post-Condition: returns the length, or -1 at a clean end of input.
+     */
+    static int readPlainLength(DataInputStream data, int blockBytes) throws IOException {
+        int first = data.read();
+        if(first < 0){
+            return -1;
+        }
+        int plainLength = (first << 24) | (data.readUnsignedByte() << 16) | (data.readUnsignedByte() << 8) | data.readUnsignedByte();
+        if(plainLength < 0 || plainLength > blockBytes){
+            throw new IOException("Invalid block length " + plainLength + ".");
+        }
+        return plainLength;
+    }
+
+    /**
+     *Package-private method to return the largest two's-complement length, in bytes, of any ciphertext the key can produce.
+     *A ciphertext is a sum of at most n elements of b, each below q, so it has fewer than q.bitLength() + log2(n) + 1 bits.
+     */
+    static int maxCiphertextBytes(MerkleHellmanKey key){
+        int lengthBits = 32 - Integer.numberOfLeadingZeros(key.returnVectorLength());
+        return (key.returnQ().bitLength() + lengthBits) / 8 + 1;
+    }
+
+    /**
+     *Private method to enforce that only the final block is short.
+     *Post-Condition: returns whether the block just read was short.  Throws IOException if an earlier block was.
+     */
+    private static boolean checkOrder(boolean ended, int plainLength, int blockBytes) throws IOException {
+        if(ended){
+            throw new IOException("Short block followed by another record.");
+        }
+        return plainLength < blockBytes;
+    }
+
+    /**
+     *Package-private method to read the ciphertext that follows a plaintext length.
+     *Pre-Condition: maxBytes is the largest ciphertext length accepted, such as maxCiphertextBytes(key), so a corrupt
+     *length cannot exhaust the heap.
+     */
+    static BigInteger readCiphertext(DataInputStream data, int maxBytes) throws IOException {
+        int size = data.readInt();
+        if(size <= 0 || size > maxBytes){
+            throw new IOException("Invalid ciphertext length " + size + ".");
+        }
+        byte[] bytes = new byte[size];
+        data.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+}
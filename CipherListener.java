@@ -0,0 +1,15 @@
+/**
+ * The interface CipherListener receives a callback after every instrumented cipher operation while CipherMetrics is enabled.
+ * Listeners are called on the thread that ran the operation, so implementations must be thread-safe and should return quickly.
+ */
+public interface CipherListener {
+
+    /**
+     *Method called after an operation completes.
+     * op - the operation that ran.
+     * nanos - elapsed time in nanoseconds.
+     * bytes - message bytes processed, or 0 for key generation.
+     * bits - bit length of q for CREATE_W and CREATE_B, and of the ciphertext for ENCRYPT and DECRYPT.
+     */
+    void operationCompleted(CipherMetrics.Operation op, long nanos, long bytes, int bits);
+}
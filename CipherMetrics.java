@@ -0,0 +1,267 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The class CipherMetrics collects process-wide counters, latency histograms and gauges for key generation, encryption and
+ * decryption, and publishes them through JMX and to registered CipherListeners.
+ * Metrics start disabled.  While disabled, an instrumented operation costs one volatile read, in start(), and no clock reads or writes.
+ */
+public class CipherMetrics implements CipherMetricsMBean {
+
+	/**
+     *The instrumented operations.
+     */
+    public enum Operation { CREATE_W, CREATE_B, ENCRYPT, DECRYPT }
+
+    /**
+     *JMX name under which register() publishes the metrics.
+     */
+    public static final String OBJECT_NAME = "merklehellman:type=CipherMetrics";
+
+    /**
+     *Number of power-of-two latency buckets; bucket i counts latencies in [2^i, 2^(i+1)) nanoseconds.
+     */
+    private static final int BUCKETS = 48;
+
+    /**
+     *Value start() returns while disabled.  System.nanoTime() may return any long, including 0, so start() moves a
+     *reading that equals this value by one nanosecond rather than drop the sample.
+     */
+    static final long DISABLED = Long.MIN_VALUE;
+
+    private static final CipherMetrics INSTANCE = new CipherMetrics();
+    private static volatile boolean enabled;
+
+    /**
+     *Private instance variables, each indexed by Operation.ordinal().
+	 * counts, bytes, nanos - totals per operation.
+	 * histograms - latency histogram per operation, BUCKETS entries each.
+	 * gauges - last key size, last ciphertext and largest ciphertext in bits.
+	 * listeners - registered CipherListeners.
+     */
+    private final LongAdder[] counts = new LongAdder[Operation.values().length];
+    private final LongAdder[] bytes = new LongAdder[Operation.values().length];
+    private final LongAdder[] nanos = new LongAdder[Operation.values().length];
+    private final AtomicLongArray histograms = new AtomicLongArray(Operation.values().length * BUCKETS);
+    private final AtomicIntegerArray gauges = new AtomicIntegerArray(3);
+    private final List<CipherListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     *Private constructor; use global().
+     */
+    private CipherMetrics(){
+        for(int i = 0; i < counts.length; i++){
+            counts[i] = new LongAdder();
+            bytes[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     *Method to return the process-wide CipherMetrics instance.
+     */
+    public static CipherMetrics global(){
+        return INSTANCE;
+    }
+
+    /**
+     *Method called at the start of an instrumented operation.
+     *Post-Condition: returns the current System.nanoTime() while enabled, and DISABLED otherwise.
+     */
+    static long start(){
+        if(!enabled){
+            return DISABLED;
+        }
+        long now = System.nanoTime();
+        return now == DISABLED ? now + 1 : now;
+    }
+
+    /**
+     *Method called at the end of an instrumented operation with the value start() returned.
+     *Does nothing when start was DISABLED, so callers need no extra check.
+     */
+    static void record(Operation op, long start, long byteCount, int bits){
+        if(start != DISABLED){
+            INSTANCE.add(op, System.nanoTime() - start, byteCount, bits);
+        }
+    }
+
+    /**
+     *Method to register this instance with the platform MBeanServer under OBJECT_NAME, if it is not registered already.
+     */
+    public static void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if(!server.isRegistered(name)){
+            server.registerMBean(INSTANCE, name);
+        }
+    }
+
+    /**
+     *Methods to add and remove listeners.  Listeners are only called while metrics are enabled.
+     */
+    public void addListener(CipherListener listener){
+        listeners.add(listener);
+    }
+
+    public void removeListener(CipherListener listener){
+        listeners.remove(listener);
+    }
+
+    /**
+     *Private method to update counters, histogram and gauges for one operation and notify listeners.
+     */
+    private void add(Operation op, long elapsed, long byteCount, int bits){
+        int i = op.ordinal();
+        counts[i].increment();
+        bytes[i].add(byteCount);
+        nanos[i].add(elapsed);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(1L, elapsed)));
+        histograms.incrementAndGet(i * BUCKETS + bucket);
+        if(op == Operation.CREATE_W){
+            gauges.set(0, bits);
+        } else if(op == Operation.ENCRYPT || op == Operation.DECRYPT){
+            gauges.set(1, bits);
+            gauges.accumulateAndGet(2, bits, Math::max);
+        }
+        for(CipherListener listener : listeners){
+            listener.operationCompleted(op, elapsed, byteCount, bits);
+        }
+    }
+
+    /**
+     *Private method to return the mean latency of op in microseconds.
+     */
+    private double mean(Operation op){
+        long count = counts[op.ordinal()].sum();
+        return count == 0 ? 0 : nanos[op.ordinal()].sum() / 1000.0 / count;
+    }
+
+    /**
+     *Private method to return the upper bound, in microseconds, of the histogram bucket holding quantile p of op's latencies.
+     */
+    private double percentile(Operation op, double p){
+        int base = op.ordinal() * BUCKETS;
+        long total = 0;
+        for(int b = 0; b < BUCKETS; b++){
+            total += histograms.get(base + b);
+        }
+        if(total == 0){
+            return 0;
+        }
+        long target = (long) Math.ceil(p * total);
+        long seen = 0;
+        for(int b = 0; b < BUCKETS; b++){
+            seen += histograms.get(base + b);
+            if(seen >= target){
+                return (1L << (b + 1)) / 1000.0;
+            }
+        }
+        return (1L << BUCKETS) / 1000.0;
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    public void setEnabled(boolean value){
+        enabled = value;
+    }
+
+    public void reset(){
+        for(int i = 0; i < counts.length; i++){
+            counts[i].reset();
+            bytes[i].reset();
+            nanos[i].reset();
+        }
+        for(int i = 0; i < histograms.length(); i++){
+            histograms.set(i, 0);
+        }
+        for(int i = 0; i < gauges.length(); i++){
+            gauges.set(i, 0);
+        }
+    }
+
+    public long getCreatewCount(){
+        return counts[Operation.CREATE_W.ordinal()].sum();
+    }
+
+    public double getCreatewMeanMicros(){
+        return mean(Operation.CREATE_W);
+    }
+
+    public double getCreatewP99Micros(){
+        return percentile(Operation.CREATE_W, 0.99);
+    }
+
+    public long getCreatebCount(){
+        return counts[Operation.CREATE_B.ordinal()].sum();
+    }
+
+    public double getCreatebMeanMicros(){
+        return mean(Operation.CREATE_B);
+    }
+
+    public double getCreatebP99Micros(){
+        return percentile(Operation.CREATE_B, 0.99);
+    }
+
+    public long getEncryptCount(){
+        return counts[Operation.ENCRYPT.ordinal()].sum();
+    }
+
+    public long getEncryptBytes(){
+        return bytes[Operation.ENCRYPT.ordinal()].sum();
+    }
+
+    public double getEncryptMeanMicros(){
+        return mean(Operation.ENCRYPT);
+    }
+
+    public double getEncryptP50Micros(){
+        return percentile(Operation.ENCRYPT, 0.50);
+    }
+
+    public double getEncryptP99Micros(){
+        return percentile(Operation.ENCRYPT, 0.99);
+    }
+
+    public long getDecryptCount(){
+        return counts[Operation.DECRYPT.ordinal()].sum();
+    }
+
+    public long getDecryptBytes(){
+        return bytes[Operation.DECRYPT.ordinal()].sum();
+    }
+
+    public double getDecryptMeanMicros(){
+        return mean(Operation.DECRYPT);
+    }
+
+    public double getDecryptP50Micros(){
+        return percentile(Operation.DECRYPT, 0.50);
+    }
+
+    public double getDecryptP99Micros(){
+        return percentile(Operation.DECRYPT, 0.99);
+    }
+
+    public int getKeySizeBits(){
+        return gauges.get(0);
+    }
+
+    public int getLastCiphertextBits(){
+        return gauges.get(1);
+    }
+
+    public int getMaxCiphertextBits(){
+        return gauges.get(2);
+    }
+}
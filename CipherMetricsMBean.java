@@ -0,0 +1,50 @@
+/**
+ * The interface CipherMetricsMBean is the JMX management interface of CipherMetrics.
+ * Latencies are reported in microseconds.  Percentiles are upper bounds of power-of-two histogram buckets.
+ */
+public interface CipherMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+
+    long getCreatewCount();
+
+    double getCreatewMeanMicros();
+
+    double getCreatewP99Micros();
+
+    long getCreatebCount();
+
+    double getCreatebMeanMicros();
+
+    double getCreatebP99Micros();
+
+    long getEncryptCount();
+
+    long getEncryptBytes();
+
+    double getEncryptMeanMicros();
+
+    double getEncryptP50Micros();
+
+    double getEncryptP99Micros();
+
+    long getDecryptCount();
+
+    long getDecryptBytes();
+
+    double getDecryptMeanMicros();
+
+    double getDecryptP50Micros();
+
+    double getDecryptP99Micros();
+
+    int getKeySizeBits();
+
+    int getLastCiphertextBits();
+
+    int getMaxCiphertextBits();
+}
@@ -0,0 +1,80 @@
+/**
+ * The class CipherWorkspace holds the scratch state one encryption or decryption needs: a LimbInteger accumulator for
+ * the knapsack sum, a LimbInteger remainder for the greedy walk, scratch limbs for the Barrett reduction in
+ * DecryptionContext, and a byte buffer for converting limbs to a BigInteger.
+ * Passing the same workspace to repeated calls lets them run without allocating anything but their result.
+ * A workspace must only be used by one thread at a time.  forThread() returns one per thread, and is what the methods
+ * without a workspace argument use.
+ */
+public final class CipherWorkspace {
+
+    private static final ThreadLocal<CipherWorkspace> LOCAL = ThreadLocal.withInitial(CipherWorkspace::new);
+
+	/**
+     *Private instance variables for the CipherWorkspace class.
+	 * LimbInteger accumulator - encryption sum, replaced only when a key of a different width is used.
+	 * LimbInteger remainder - decryption remainder, replaced likewise.
+	 * long[] limbs - reduction scratch, grown as needed.
+	 * Byte[] bytes - conversion buffer, grown as needed.
+     */
+    private LimbInteger accumulator;
+    private LimbInteger remainder;
+    private long[] limbs = new long[0];
+    private byte[] bytes = new byte[0];
+
+    /**
+     *Constructs a new, empty CipherWorkspace.  Buffers are sized on first use.
+     */
+    public CipherWorkspace(){
+    }
+
+    /**
+     *Method to return the calling thread's workspace.
+     */
+    public static CipherWorkspace forThread(){
+        return LOCAL.get();
+    }
+
+    /**
+     *Package-private method to return the accumulator cleared to zero with the given number of limbs.
+     */
+    LimbInteger accumulator(int width){
+        if(accumulator == null || accumulator.width() != width){
+            accumulator = new LimbInteger(width);
+        } else {
+            accumulator.clear();
+        }
+        return accumulator;
+    }
+
+    /**
+     *Package-private method to return the remainder register with the given number of limbs.  Its value is undefined
+     *until the caller sets it.
+     */
+    LimbInteger remainder(int width){
+        if(remainder == null || remainder.width() != width){
+            remainder = new LimbInteger(width);
+        }
+        return remainder;
+    }
+
+    /**
+     *Package-private method to return a scratch limb array of at least length limbs.  Its contents are undefined.
+     */
+    long[] limbs(int length){
+        if(limbs.length < length){
+            limbs = new long[length];
+        }
+        return limbs;
+    }
+
+    /**
+     *Package-private method to return a byte buffer of at least length bytes.
+     */
+    byte[] bytes(int length){
+        if(bytes.length < length){
+            bytes = new byte[length];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,407 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The class CiphertextCodec stores ciphertexts as compact binary instead of decimal text, which is about 2.4 times larger
+ * and far slower to print and parse.
+ * One ciphertext is encoded as its two's-complement byte length, written as an unsigned LEB128 varint, followed by those
+ * bytes, as returned by BigInteger.toByteArray().  A 640-bit ciphertext takes 2 + 81 bytes.
+ * Many ciphertexts are stored in a batch container: a sequence of frames, each laid out as
+ *   magic "MHCB" (4 bytes), version (1 byte), key id length (varint), key id (UTF-8), count (varint),
+ *   then count entries of plaintext block length (varint) and ciphertext (encoded as above).
+ * A Writer emits one frame per frameCapacity ciphertexts, and a Reader streams entries back one at a time, so neither
+ * holds more than one frame in memory.  A Reader built for a key rejects entries longer than any ciphertext of that key.  No BigInteger is ever converted to or from a String.
+ */
+public class CiphertextCodec {
+
+	/**
+     *Constants identifying the container format.
+     */
+    static final int MAGIC = 0x4D484342;
+    static final int VERSION = 1;
+
+    /**
+     *Default number of ciphertexts per frame.
+     */
+    public static final int DEFAULT_FRAME_CAPACITY = 4096;
+
+    /**
+     *Largest ciphertext length, in bytes, any Reader accepts, so a corrupt length cannot exhaust the heap.
+     */
+    static final int MAX_CIPHERTEXT_BYTES = 1 << 24;
+
+    /**
+     *Private constructor; CiphertextCodec only has static methods and nested classes.
+     */
+    private CiphertextCodec(){
+    }
+
+    /**
+     *Method to write one ciphertext as a varint length followed by its two's-complement bytes.
+     *Theta(n), linear in the size of the ciphertext.
+     */
+    public static void write(OutputStream out, BigInteger ciphertext) throws IOException {
+        byte[] bytes = ciphertext.toByteArray();
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     *Method to read one ciphertext written by write.
+     *Post-Condition: throws EOFException if the input ends early and IOException if the length is invalid.
+     *Theta(n), linear in the size of the ciphertext.
+     */
+    public static BigInteger read(InputStream in) throws IOException {
+        int size = readLength(in, MAX_CIPHERTEXT_BYTES);
+        byte[] bytes = in.readNBytes(size);
+        if(bytes.length < size){
+            throw new EOFException("Ciphertext cut short after " + bytes.length + " of " + size + " bytes.");
+        }
+        return new BigInteger(bytes);
+    }
+
+    /**
+     *Method to return the number of bytes write uses for a ciphertext, without encoding it.
+     */
+    public static int encodedLength(BigInteger ciphertext){
+        int size = ciphertext.bitLength() / 8 + 1;
+        return varintLength(size) + size;
+    }
+
+    /**
+     *Package-private method to write a non-negative int as an unsigned LEB128 varint: seven bits per byte, least
+     *significant group first, with the high bit set on every byte but the last.
+     */
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while((value & ~0x7F) != 0){
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     *Package-private method to return the number of bytes writeVarint uses for value.
+     */
+    static int varintLength(int value){
+        return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+    }
+
+    /**
+     *Package-private method to read a varint written by writeVarint.
+     *Post-Condition: returns the value, or -1 at a clean end of input.  Throws EOFException if the varint is cut short
+     *and IOException if it does not fit in a non-negative int.
+     */
+    static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7){
+            int next = in.read();
+            if(next < 0){
+                if(shift == 0){
+                    return -1;
+                }
+                throw new EOFException("Varint cut short.");
+            }
+            value |= (next & 0x7F) << shift;
+            if((next & 0x80) == 0){
+                if(value < 0 || (shift == 28 && next > 0x07)){
+                    throw new IOException("Varint out of range.");
+                }
+                return value;
+            }
+        }
+        throw new IOException("Varint longer than five bytes.");
+    }
+
+    /**
+     *Private method to read a varint length that must be present and lie in [1, max].
+     */
+    private static int readLength(InputStream in, int max) throws IOException {
+        int size = readVarint(in);
+        if(size < 0){
+            throw new EOFException("Length expected at end of input.");
+        }
+        if(size < 1 || size > max){
+            throw new IOException("Invalid length " + size + ".");
+        }
+        return size;
+    }
+
+    /**
+     * The class Writer streams ciphertexts into the batch container.
+     * Entries are encoded into an in-memory frame as they arrive, and the frame is written out when it holds
+     * frameCapacity entries or when flush or close is called.  A Writer must only be used by one thread at a time.
+     */
+    public static class Writer implements Closeable, Flushable {
+
+    	/**
+         *Private instance variables for the Writer class.
+    	 * OutputStream out - buffered destination.
+    	 * Byte[] header - encoded key id, shared by every frame.
+    	 * Int frameCapacity - entries per full frame.
+    	 * ByteArrayOutputStream frame - encoded entries of the pending frame.
+    	 * Int count - entries in the pending frame.
+    	 * Long written - entries written in total.
+         */
+        private final OutputStream out;
+        private final byte[] header;
+        private final int frameCapacity;
+        private final ByteArrayOutputStream frame = new ByteArrayOutputStream(1 << 12);
+        private int count;
+        private long written;
+
+        /**
+         *Constructs a new Writer with DEFAULT_FRAME_CAPACITY entries per frame.
+         */
+        public Writer(OutputStream out, String keyId){
+            this(out, keyId, DEFAULT_FRAME_CAPACITY);
+        }
+
+        /**
+         *Constructs a new Writer.
+         *Pre-Condition: keyId must be at most 255 UTF-8 bytes, as in EncryptionServer, and frameCapacity must be positive.
+         */
+        public Writer(OutputStream out, String keyId, int frameCapacity){
+            byte[] id = keyId.getBytes(StandardCharsets.UTF_8);
+            if(id.length > 255){
+                throw new IllegalArgumentException("Key id longer than 255 bytes.");
+            }
+            if(frameCapacity <= 0){
+                throw new IllegalArgumentException("Frame capacity must be positive.");
+            }
+            this.out = new BufferedOutputStream(out, BlockStream.BUFFER_SIZE);
+            this.header = id;
+            this.frameCapacity = frameCapacity;
+        }
+
+        /**
+         *Method to add one ciphertext and the length of the plaintext block it encrypts.
+         *Pre-Condition: plainLength must be non-negative.
+         *Post-Condition: writes the pending frame if it is now full.
+         */
+        public void write(int plainLength, BigInteger ciphertext) throws IOException {
+            if(plainLength < 0){
+                throw new IllegalArgumentException("Negative block length " + plainLength + ".");
+            }
+            writeVarint(frame, plainLength);
+            CiphertextCodec.write(frame, ciphertext);
+            count++;
+            written++;
+            if(count == frameCapacity){
+                writeFrame();
+            }
+        }
+
+        /**
+         *Method to return the number of ciphertexts written so far.
+         */
+        public long returnCount(){
+            return written;
+        }
+
+        /**
+         *Method to write the pending frame, if any, and flush the destination.
+         */
+        public void flush() throws IOException {
+            writeFrame();
+            out.flush();
+        }
+
+        /**
+         *Method to write the pending frame, if any, and close the destination.
+         */
+        public void close() throws IOException {
+            try {
+                writeFrame();
+            } finally {
+                out.close();
+            }
+        }
+
+        /**
+         *Private method to write the header and entries of the pending frame and start a new one.
+         */
+        private void writeFrame() throws IOException {
+            if(count == 0){
+                return;
+            }
+            out.write(MAGIC >>> 24);
+            out.write(MAGIC >>> 16);
+            out.write(MAGIC >>> 8);
+            out.write(MAGIC);
+            out.write(VERSION);
+            writeVarint(out, header.length);
+            out.write(header);
+            writeVarint(out, count);
+            frame.writeTo(out);
+            frame.reset();
+            count = 0;
+        }
+    }
+
+    /**
+     * The class Reader streams entries back out of the batch container, one frame header at a time.
+     * Call read until it returns null; returnPlainLength and returnKeyId describe the entry it last returned.
+     * Alternatively call next until it returns false and take each ciphertext's bytes from returnCiphertext, which builds
+     * no BigInteger.  A Reader must only be used by one thread at a time.
+     */
+    public static class Reader implements Closeable {
+
+    	/**
+         *Private instance variables for the Reader class.
+    	 * InputStream in - buffered source.
+    	 * Int maxBytes - largest ciphertext length accepted.
+    	 * String keyId - key id of the current frame.
+    	 * Int remaining - entries left in the current frame.
+    	 * Int plainLength - plaintext block length of the last entry read.
+    	 * Byte[] scratch - reused buffer for ciphertext bytes.
+    	 * Int size - length of the ciphertext last read into scratch.
+         */
+        private final InputStream in;
+        private final int maxBytes;
+        private String keyId;
+        private int remaining;
+        private int plainLength = -1;
+        private byte[] scratch = new byte[64];
+        private int size;
+
+        /**
+         *Constructs a new Reader over a source written by Writer, accepting ciphertexts of up to MAX_CIPHERTEXT_BYTES.
+         */
+        public Reader(InputStream in){
+            this(in, MAX_CIPHERTEXT_BYTES);
+        }
+
+        /**
+         *Constructs a new Reader that rejects ciphertexts longer than maxBytes, such as BlockStream.maxCiphertextBytes(key)
+         *for the key the source was written with.
+         *Pre-Condition: maxBytes must lie in [1, MAX_CIPHERTEXT_BYTES].
+         */
+        public Reader(InputStream in, int maxBytes){
+            if(maxBytes < 1 || maxBytes > MAX_CIPHERTEXT_BYTES){
+                throw new IllegalArgumentException("Invalid ciphertext limit " + maxBytes + ".");
+            }
+            this.in = new BufferedInputStream(in, BlockStream.BUFFER_SIZE);
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         *Method to read the next ciphertext.
+         *Post-Condition: returns the ciphertext, or null at a clean end of input.  Throws EOFException if the input ends
+         *inside a frame and IOException if a frame header or length is invalid.
+         *Theta(n), linear in the size of the ciphertext.  The returned BigInteger is the only allocation per entry.
+         */
+        public BigInteger read() throws IOException {
+            return next() ? new BigInteger(scratch, 0, size) : null;
+        }
+
+        /**
+         *Method to read the next entry without converting its ciphertext to a BigInteger.
+         *Post-Condition: returns false at a clean end of input; otherwise the ciphertext is in returnCiphertext() until the
+         *next call.  Throws as read does, and IOException if the ciphertext is longer than this Reader's limit.
+         *Theta(n), linear in the size of the ciphertext.  Allocates nothing once the buffer has grown to the largest entry.
+         */
+        public boolean next() throws IOException {
+            while(remaining == 0){
+                if(!readHeader()){
+                    return false;
+                }
+            }
+            int length = readVarint(in);
+            if(length < 0){
+                throw new EOFException("Frame cut short with " + remaining + " entries left.");
+            }
+            int bytes = readLength(in, maxBytes);
+            if(scratch.length < bytes){
+                scratch = new byte[Math.min(maxBytes, Math.max(bytes, 2 * scratch.length))];
+            }
+            int read = in.readNBytes(scratch, 0, bytes);
+            if(read < bytes){
+                throw new EOFException("Ciphertext cut short after " + read + " of " + bytes + " bytes.");
+            }
+            remaining--;
+            plainLength = length;
+            size = bytes;
+            return true;
+        }
+
+        /**
+         *Method to return the buffer holding the ciphertext last read by next, as two's-complement big-endian bytes in
+         *[0, returnCiphertextLength()).  The buffer is reused by the next call.
+         */
+        public byte[] returnCiphertext(){
+            return scratch;
+        }
+
+        /**
+         *Method to return the length in bytes of the ciphertext last read by next.
+         */
+        public int returnCiphertextLength(){
+            return size;
+        }
+
+        /**
+         *Method to return the plaintext block length of the ciphertext last returned by read, or -1 before the first.
+         */
+        public int returnPlainLength(){
+            return plainLength;
+        }
+
+        /**
+         *Method to return the key id of the frame being read, or null before the first frame.
+         */
+        public String returnKeyId(){
+            return keyId;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /**
+         *Private method to read one frame header.
+         *Post-Condition: returns false at a clean end of input.
+         */
+        private boolean readHeader() throws IOException {
+            int first = in.read();
+            if(first < 0){
+                return false;
+            }
+            byte[] rest = in.readNBytes(4);
+            if(rest.length < 4){
+                throw new EOFException("Frame header cut short.");
+            }
+            int magic = (first << 24) | ((rest[0] & 0xFF) << 16) | ((rest[1] & 0xFF) << 8) | (rest[2] & 0xFF);
+            if(magic != MAGIC){
+                throw new IOException("Not a ciphertext batch frame.");
+            }
+            if(rest[3] != VERSION){
+                throw new IOException("Unsupported ciphertext batch version " + rest[3] + ".");
+            }
+            int idLength = readVarint(in);
+            if(idLength < 0 || idLength > 255){
+                throw new IOException("Invalid key id length " + idLength + ".");
+            }
+            byte[] id = in.readNBytes(idLength);
+            if(id.length < idLength){
+                throw new EOFException("Key id cut short.");
+            }
+            keyId = new String(id, StandardCharsets.UTF_8);
+            int count = readVarint(in);
+            if(count < 0){
+                throw new EOFException("Frame count missing.");
+            }
+            remaining = count;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * The class DecryptionContext holds the values derived from a Merkle-Hellman private key that every decryption needs.
+ * It is built once per key and caches r^-1 mod q together with a Barrett reduction setup for q, so that recovering the
+ * knapsack sum from a ciphertext uses only multiplications, shifts and subtractions instead of modInverse and BigInteger.mod.
+ * The same reduction is also kept in 64-bit limb form (Handbook of Applied Cryptography, algorithm 14.42), so that
+ * the recover methods that take a CipherWorkspace work entirely in its scratch limbs and allocate nothing.
+ * For more information on Barrett reduction, please refer to https://en.wikipedia.org/wiki/Barrett_reduction.
+ */
+public class DecryptionContext {
+
+	/**
+     *Private instance variables for the DecryptionContext class.
+	 * BigInteger q - modulus of the key.
+	 * BigInteger rinv - modular inverse of r mod q.
+	 * BigInteger mu - Barrett constant floor(4^k / q).
+	 * Int k - bit length of q.
+	 * Int s - number of 64-bit limbs of q.
+	 * long[] qLimbs, rinvLimbs - q and rinv in s limbs.
+	 * long[] muLimbs - floor(2^(128 s) / q) in s + 1 limbs, or null in the one case it needs more, q a power of 2^64.
+     */
+    private final BigInteger q;
+    private final BigInteger rinv;
+    private final BigInteger mu;
+    private final int k;
+    private final int s;
+    private final long[] qLimbs;
+    private final long[] rinvLimbs;
+    private final long[] muLimbs;
+
+    /**
+     *Constructs a new DecryptionContext for the modulus q and multiplier r of a key.
+     *Pre-Condition: q must be greater than 1 and r must be coprime to q.
+     *Post-Condition: rinv and the Barrett constant are computed.  This is the only place a modInverse or division is performed.
+     */
+    DecryptionContext(BigInteger q, BigInteger r){
+        this.q = q;
+        this.rinv = r.modInverse(q);
+        this.k = q.bitLength();
+        this.mu = BigInteger.ONE.shiftLeft(2 * k).divide(q);
+        this.s = LimbInteger.widthFor(k);
+        this.qLimbs = LimbInteger.toLimbs(q, s);
+        this.rinvLimbs = LimbInteger.toLimbs(rinv, s);
+        BigInteger limbMu = BigInteger.ONE.shiftLeft(128 * s).divide(q);
+        this.muLimbs = limbMu.bitLength() <= 64 * (s + 1) ? LimbInteger.toLimbs(limbMu, s + 1) : null;
+    }
+
+    /**
+     *Method to reduce a non-negative BigInteger modulo q using Barrett reduction.
+     *Values of 2k bits or more, and negative values, fall back to BigInteger.mod.
+     *Post-Condition: returns x mod q.
+     *Theta(1) multiplications of k-bit values, with at most two correcting subtractions.
+     */
+    public BigInteger reduce(BigInteger x){
+        if(x.signum() < 0 || x.bitLength() > 2 * k){
+            return x.mod(q);
+        }
+        BigInteger estimate = x.shiftRight(k - 1).multiply(mu).shiftRight(k + 1);
+        BigInteger result = x.subtract(estimate.multiply(q));
+        while(result.compareTo(q) >= 0){
+            result = result.subtract(q);
+        }
+        return result;
+    }
+
+    /**
+     *Method to recover the superincreasing knapsack sum, rinv * c mod q, from a ciphertext.
+     *Pre-Condition: ciphertext must be a non-negative BigInteger.
+     *Post-Condition: returns the value the greedy walk over w starts from.
+     */
+    public BigInteger recover(BigInteger ciphertext){
+        return reduce(rinv.multiply(reduce(ciphertext)));
+    }
+
+    /**
+     *Package-private method to recover rinv * c mod q into a LimbInteger using only the scratch limbs of a workspace.
+     *The ciphertext is read bit by bit with testBit, reduced mod q, multiplied by rinv and reduced again, all in limbs.
+     *Negative ciphertexts and ciphertexts of more than 128 s bits, which no encryption produces, fall back to recover(BigInteger).
+     *Pre-Condition: result must have room for a value below q.
+     *Post-Condition: result holds the value the greedy walk over w starts from.  Nothing is allocated on the limb path.
+     *Theta(s^2) limb multiplications, plus Theta(bits of c) bit tests.
+     */
+    void recover(BigInteger ciphertext, LimbInteger result, CipherWorkspace workspace){
+        if(muLimbs == null || ciphertext.signum() < 0 || ciphertext.bitLength() > 128 * s){
+            result.set(recover(ciphertext));
+            return;
+        }
+        long[] t = workspace.limbs(5 * s + 3);
+        Arrays.fill(t, 0, 2 * s, 0L);
+        for(int i = ciphertext.bitLength() - 1; i >= 0; i--){
+            if(ciphertext.testBit(i)){
+                t[i >>> 6] |= 1L << i;
+            }
+        }
+        recover(t, result);
+    }
+
+    /**
+     *Package-private method to recover rinv * c mod q into a LimbInteger from c's two's-complement big-endian bytes, as
+     *written by BigInteger.toByteArray() and CiphertextCodec, using only the scratch limbs of a workspace.
+     *This avoids both the BigInteger and the bit-by-bit read of recover(BigInteger, LimbInteger, CipherWorkspace).
+     *Negative or oversized values fall back to the BigInteger path, and an empty range throws NumberFormatException.
+     *Theta(s^2) limb multiplications, plus Theta(length) to load the bytes.
+     */
+    void recover(byte[] ciphertext, int offset, int length, LimbInteger result, CipherWorkspace workspace){
+        int start = offset;
+        int end = offset + length;
+        while(start < end && ciphertext[start] == 0){
+            start++;
+        }
+        if(muLimbs == null || length == 0 || ciphertext[offset] < 0 || end - start > 16 * s){
+            result.set(recover(new BigInteger(ciphertext, offset, length)));
+            return;
+        }
+        long[] t = workspace.limbs(5 * s + 3);
+        Arrays.fill(t, 0, 2 * s, 0L);
+        for(int i = 0; i < end - start; i++){
+            t[i >>> 3] |= (ciphertext[end - 1 - i] & 0xFFL) << (8 * (i & 7));
+        }
+        recover(t, result);
+    }
+
+    /**
+     *Private method to finish a limb recovery from the ciphertext loaded into t[0, 2s).
+     */
+    private void recover(long[] t, LimbInteger result){
+        // Scratch layout: x in [0, 2s), the Barrett product in [2s, 4s + 2), the reduced value in [4s + 2, 5s + 3).
+        int reduced = 4 * s + 2;
+        barrett(t);
+        multiply(rinvLimbs, 0, s, t, reduced, s, t, 0, 0);
+        barrett(t);
+        result.set(t, reduced, s);
+    }
+
+    /**
+     *Private method to reduce the 2s-limb value x in t[0, 2s) modulo q, leaving the result in t[4s + 2, 5s + 3).
+     *Pre-Condition: x < 2^(128 s).
+     *Theta(s^2), two limb multiplications and at most two correcting subtractions.
+     */
+    private void barrett(long[] t){
+        int product = 2 * s;
+        int reduced = 4 * s + 2;
+        // q3 = floor(floor(x / b^(s-1)) * mu / b^(s+1)) lies in the top s + 1 limbs of the product.  Terms that only reach
+        // the low s limbs are skipped; that can make q3 slightly smaller, which the correcting subtractions absorb.
+        multiply(t, s - 1, s + 1, muLimbs, 0, s + 1, t, product, s);
+        multiplyLow(t, product + s + 1, s + 1, qLimbs, s, t, reduced, s + 1);
+        long borrow = 0L;
+        for(int i = 0; i <= s; i++){
+            long x = t[i];
+            long y = t[reduced + i];
+            long diff = x - y - borrow;
+            borrow = (Long.compareUnsigned(x, y) < 0 || (x == y && borrow != 0L)) ? 1L : 0L;
+            t[reduced + i] = diff;
+        }
+        while(compareToQ(t, reduced) >= 0){
+            borrow = 0L;
+            for(int i = 0; i <= s; i++){
+                long x = t[reduced + i];
+                long y = i < s ? qLimbs[i] : 0L;
+                long diff = x - y - borrow;
+                borrow = (Long.compareUnsigned(x, y) < 0 || (x == y && borrow != 0L)) ? 1L : 0L;
+                t[reduced + i] = diff;
+            }
+        }
+    }
+
+    /**
+     *Private method to compare the s + 1 limbs of t at offset with q.
+     */
+    private int compareToQ(long[] t, int offset){
+        if(t[offset + s] != 0L){
+            return 1;
+        }
+        for(int i = s - 1; i >= 0; i--){
+            if(t[offset + i] != qLimbs[i]){
+                return Long.compareUnsigned(t[offset + i], qLimbs[i]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     *Private method to write the product of a[aOff, aOff + aLen) and b[bOff, bOff + bLen) to out[outOff, outOff + aLen + bLen),
+     *leaving out the terms a[i] * b[j] with i + j < skip.  With skip 0 the product is exact; otherwise it may be smaller
+     *than the exact product by less than 2 * aLen * b^(skip + 1).
+     *Pre-Condition: the output range does not overlap either input range.
+     */
+    private static void multiply(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long[] out, int outOff, int skip){
+        Arrays.fill(out, outOff, outOff + aLen + bLen, 0L);
+        for(int i = 0; i < aLen; i++){
+            long ai = a[aOff + i];
+            if(ai == 0L){
+                continue;
+            }
+            long carry = 0L;
+            for(int j = Math.max(0, skip - i); j < bLen; j++){
+                carry = multiplyAdd(ai, b[bOff + j], out, outOff + i + j, carry);
+            }
+            out[outOff + i + bLen] = carry;
+        }
+    }
+
+    /**
+     *Private method to write the low n limbs of the product of a[aOff, aOff + aLen) and b[0, bLen) to out[outOff, outOff + n).
+     *Pre-Condition: the output range does not overlap either input range.
+     */
+    private static void multiplyLow(long[] a, int aOff, int aLen, long[] b, int bLen, long[] out, int outOff, int n){
+        Arrays.fill(out, outOff, outOff + n, 0L);
+        for(int i = 0; i < aLen && i < n; i++){
+            long ai = a[aOff + i];
+            if(ai == 0L){
+                continue;
+            }
+            long carry = 0L;
+            int j = 0;
+            for(; j < bLen && i + j < n; j++){
+                carry = multiplyAdd(ai, b[j], out, outOff + i + j, carry);
+            }
+            if(i + j < n){
+                out[outOff + i + j] = carry;
+            }
+        }
+    }
+
+    /**
+     *Private method to add x * y + carry to out[index] and return the new carry, all unsigned.
+     */
+    private static long multiplyAdd(long x, long y, long[] out, int index, long carry){
+        long low = x * y;
+        long high = Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+        long old = out[index];
+        long sum = old + low;
+        high += ((old & low) | ((old | low) & ~sum)) >>> 63;
+        long total = sum + carry;
+        high += ((sum & carry) | ((sum | carry) & ~total)) >>> 63;
+        out[index] = total;
+        return high;
+    }
+
+    /**
+     *Method to return a pointer to the cached modular inverse of r.
+     *Theta(1), constant time complexity.
+     */
+    public BigInteger returnRinv(){
+        return rinv;
+    }
+
+    /**
+     *Method to return a pointer to the modulus q.
+     *Theta(1), constant time complexity.
+     */
+    public BigInteger returnQ(){
+        return q;
+    }
+}
@@ -1,7 +1,8 @@
 import java.math.BigInteger;
 
 /**
- * The class DoubleNode holds two pointers and a BigInteger. It is used to represent a single node on a DoublyLinkedList object.
+ * The class DoubleNode holds two pointers and a BigInteger. It represents one element of the node chain that
+ * DoublyLinkedList.getHead() and getTail() return for callers that walk the list node by node.
  */
 public class DoubleNode {
 
@@ -1,20 +1,66 @@
 import java.math.BigInteger;
+import java.util.AbstractCollection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
- * The class DoublyLinkedList implements a doubly linked list of BigIntegers in Java. The instance variables head and tail are initially null.
- * As elements are added head points to the first element on the list and tail points to the last element.
- * Each node on the list is of type DoubleNode. Each DoubleNode holds a pointer to the previous node and a pointer to the next node in the list.
+ * The class DoublyLinkedList implements a doubly linked list of BigIntegers in Java, usable as a Deque.
+ * The list is unrolled: each node is a Chunk holding up to CHUNK_CAPACITY elements in an array, linked to the previous
+ * and next chunks, so an element costs one array slot instead of a whole node, and traversal touches memory in order.
+ * The size is kept in a counter, iterators run in both directions and support remove, and spliterator() splits evenly by
+ * element count so stream().parallel() divides the work across threads.
+ * Null elements are not permitted.  Iterators and spliterators are fail-fast, like those of java.util collections.
+ * getHead() and getTail() still return DoubleNode chains for older callers; they are built on demand as a snapshot.
  */
-public class DoublyLinkedList {
+public class DoublyLinkedList extends AbstractCollection<BigInteger> implements Deque<BigInteger> {
 
 	/**
-     *Private instance variables to represent the head and tail DoubleNode objects of the linked list.
-     */ 
-    private DoubleNode head;
-    private DoubleNode tail;
-    
+     *Largest number of elements one chunk holds.
+     */
+    static final int CHUNK_CAPACITY = 64;
+
+    /**
+     *One node of the unrolled list.  Elements occupy items[start, end).  An unlinked chunk keeps its prev and next
+     *pointers so that an iterator standing on it can still move on.
+     */
+    private static final class Chunk {
+        final BigInteger[] items = new BigInteger[CHUNK_CAPACITY];
+        int start;
+        int end;
+        Chunk prev;
+        Chunk next;
+
+        Chunk(int position){
+            start = position;
+            end = position;
+        }
+
+        int count(){
+            return end - start;
+        }
+    }
+
+	/**
+     *Private instance variables for the DoublyLinkedList class.
+	 * head, tail - first and last chunks, both null when the list is empty.
+	 * size - number of elements.
+	 * modCount - number of structural changes, checked by iterators and spliterators.
+	 * nodeHead, nodeTail, nodeModCount - DoubleNode snapshot returned by getHead and getTail, and the modCount it was built at.
+     */
+    private Chunk head;
+    private Chunk tail;
+    private int size;
+    private int modCount;
+    private DoubleNode nodeHead;
+    private DoubleNode nodeTail;
+    private int nodeModCount = -1;
+
     /**
-     *Constructs a new DoublyLinkedList object with head and tail as null.
+     *Constructs a new, empty DoublyLinkedList object.
      */
     DoublyLinkedList(){
         head = null;
@@ -24,58 +70,38 @@ public class DoublyLinkedList {
     /**
      *Add a BigInteger node containing the BigInteger Int1 to the end of the linked list. This routine does not require a search.
      *Pre-Condition: A valid BigInteger element is passed to the method's argument.
-     *Post-Condition: The method updates the DoublyLinkedList object to insert a new DoubleNode object as tail.
+     *Post-Condition: The method updates the DoublyLinkedList object to insert Int1 as the last element.
      *Theta(1), constant time complexity
      */
     public void addIntAtEnd(BigInteger Int1){
-        if(this.isEmpty()){
-            DoubleNode newEnd = new DoubleNode (null, Int1, null);
-            head = newEnd;
-            tail = newEnd;
-        } else {
-            DoubleNode newEnd = new DoubleNode(tail, Int1, null);
-            tail.setNext(newEnd);
-            tail = newEnd;
-        }
+        addLast(Int1);
     }
 
     /**
      *Add a BigInteger node containing the BigInteger Int1 to the front of the linked list. No search is required.
      *Pre-Condition: A valid BigInteger element is passed to the method's argument.
-     *Post-Condition: The method updates the DoublyLinkedList object to insert a new DoubleNode object as head.
+     *Post-Condition: The method updates the DoublyLinkedList object to insert Int1 as the first element.
      *Theta(1), constant time complexity
      */
     public void addIntAtFront(BigInteger Int1){
-        if(this.isEmpty()){
-            DoubleNode newBeg = new DoubleNode (null, Int1, null);
-            head = newBeg;
-            tail = newBeg;
-        } else {
-            DoubleNode newBeg = new DoubleNode(null, Int1, head);
-            head.setPrev(newBeg);
-            head = newBeg;
-        }
+        addFirst(Int1);
     }
-    
+
     /**
-     *Counts the number of nodes in the list. We are not maintaining a counter so a search is required.
-     *Pre-Condition: must be null-terminating DoublyLinkedList object.
-     *Post-Condition: returns the number of nodes in the DoublyLinkedList between head and tail inclusive as an integer.
-     *Theta(n), linear time complexity.
+     *Counts the number of nodes in the list.  The count is maintained as elements are added and removed.
+     *Post-Condition: returns the number of elements in the DoublyLinkedList as an integer.
+     *Theta(1), constant time complexity.
      */
     public int countNodes(){
-        int i = 0;
-        DoubleNode cycleNode = new DoubleNode();
-        cycleNode = head;
-        if(cycleNode == null){
-            return i;
-        } else {
-            do {
-                i += 1;
-                cycleNode = cycleNode.getNext();
-            } while (cycleNode != null);
-            return i;
-        }
+        return size;
+    }
+
+    /**
+     *Method to return the number of elements in the list.
+     *Theta(1), constant time complexity.
+     */
+    public int size(){
+        return size;
     }
 
      /**
@@ -84,47 +110,571 @@ public class DoublyLinkedList {
      *Theta(1), constant time complexity.
      */
     public boolean isEmpty(){
-        if(head == null && tail == null){
-            return true;
-        } else {
+        return size == 0;
+    }
+
+    /**
+     *Method to return the element at a position, counted from the front.
+     *Pre-Condition: index must be in the range [0, size()).
+     *Theta(n / CHUNK_CAPACITY), skipping whole chunks from whichever end is closer.
+     */
+    public BigInteger get(int index){
+        if(index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size + ".");
+        }
+        if(index < size / 2){
+            Chunk chunk = head;
+            while(index >= chunk.count()){
+                index -= chunk.count();
+                chunk = chunk.next;
+            }
+            return chunk.items[chunk.start + index];
+        }
+        int fromEnd = size - 1 - index;
+        Chunk chunk = tail;
+        while(fromEnd >= chunk.count()){
+            fromEnd -= chunk.count();
+            chunk = chunk.prev;
+        }
+        return chunk.items[chunk.end - 1 - fromEnd];
+    }
+
+    /**
+     *Deque methods that insert elements.  Null elements throw NullPointerException.
+     *Theta(1), constant time complexity.
+     */
+    public void addFirst(BigInteger e){
+        checkNotNull(e);
+        if(head == null || head.start == 0){
+            Chunk chunk = new Chunk(CHUNK_CAPACITY);
+            chunk.next = head;
+            if(head == null){
+                tail = chunk;
+            } else {
+                head.prev = chunk;
+            }
+            head = chunk;
+        }
+        head.items[--head.start] = e;
+        size++;
+        modCount++;
+    }
+
+    public void addLast(BigInteger e){
+        checkNotNull(e);
+        if(tail == null || tail.end == CHUNK_CAPACITY){
+            Chunk chunk = new Chunk(0);
+            chunk.prev = tail;
+            if(tail == null){
+                head = chunk;
+            } else {
+                tail.next = chunk;
+            }
+            tail = chunk;
+        }
+        tail.items[tail.end++] = e;
+        size++;
+        modCount++;
+    }
+
+    public boolean offerFirst(BigInteger e){
+        addFirst(e);
+        return true;
+    }
+
+    public boolean offerLast(BigInteger e){
+        addLast(e);
+        return true;
+    }
+
+    public boolean add(BigInteger e){
+        addLast(e);
+        return true;
+    }
+
+    public boolean offer(BigInteger e){
+        addLast(e);
+        return true;
+    }
+
+    public void push(BigInteger e){
+        addFirst(e);
+    }
+
+    /**
+     *Deque methods that remove elements from either end.  The poll methods return null on an empty list, the others
+     *throw NoSuchElementException.
+     *Theta(1), constant time complexity.
+     */
+    public BigInteger pollFirst(){
+        if(head == null){
+            return null;
+        }
+        Chunk chunk = head;
+        BigInteger e = chunk.items[chunk.start];
+        removeAt(chunk, chunk.start);
+        return e;
+    }
+
+    public BigInteger pollLast(){
+        if(tail == null){
+            return null;
+        }
+        Chunk chunk = tail;
+        BigInteger e = chunk.items[chunk.end - 1];
+        removeAt(chunk, chunk.end - 1);
+        return e;
+    }
+
+    public BigInteger removeFirst(){
+        if(head == null){
+            throw new NoSuchElementException();
+        }
+        return pollFirst();
+    }
+
+    public BigInteger removeLast(){
+        if(tail == null){
+            throw new NoSuchElementException();
+        }
+        return pollLast();
+    }
+
+    public BigInteger poll(){
+        return pollFirst();
+    }
+
+    public BigInteger remove(){
+        return removeFirst();
+    }
+
+    public BigInteger pop(){
+        return removeFirst();
+    }
+
+    /**
+     *Deque methods that examine either end without removing.  The peek methods return null on an empty list, the others
+     *throw NoSuchElementException.
+     *Theta(1), constant time complexity.
+     */
+    public BigInteger peekFirst(){
+        return head == null ? null : head.items[head.start];
+    }
+
+    public BigInteger peekLast(){
+        return tail == null ? null : tail.items[tail.end - 1];
+    }
+
+    public BigInteger getFirst(){
+        if(head == null){
+            throw new NoSuchElementException();
+        }
+        return peekFirst();
+    }
+
+    public BigInteger getLast(){
+        if(tail == null){
+            throw new NoSuchElementException();
+        }
+        return peekLast();
+    }
+
+    public BigInteger peek(){
+        return peekFirst();
+    }
+
+    public BigInteger element(){
+        return getFirst();
+    }
+
+    /**
+     *Methods to remove the first or last element equal to o.
+     *Post-Condition: returns true if an element was removed.
+     *Theta(n), linear time complexity.
+     */
+    public boolean removeFirstOccurrence(Object o){
+        if(o == null){
+            return false;
+        }
+        for(Chunk chunk = head; chunk != null; chunk = chunk.next){
+            for(int i = chunk.start; i < chunk.end; i++){
+                if(o.equals(chunk.items[i])){
+                    removeAt(chunk, i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean removeLastOccurrence(Object o){
+        if(o == null){
             return false;
         }
+        for(Chunk chunk = tail; chunk != null; chunk = chunk.prev){
+            for(int i = chunk.end - 1; i >= chunk.start; i--){
+                if(o.equals(chunk.items[i])){
+                    removeAt(chunk, i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean remove(Object o){
+        return removeFirstOccurrence(o);
+    }
+
+    /**
+     *Method to remove every element.
+     *Theta(1); the chunks are left to the garbage collector.
+     */
+    public void clear(){
+        head = null;
+        tail = null;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     *Method to return an iterator from the first element to the last.  Supports remove.
+     */
+    public Iterator<BigInteger> iterator(){
+        return new Itr();
     }
-    
+
     /**
-     * Method to return a pointer to the DoubleNode object which is the head of the DoublyLinkedList.
-     * Post-Condition: returns reference to head DoubleNode.
-     * Theta(1), constant time complexity.
+     *Method to return an iterator from the last element to the first.  Supports remove.
      */
+    public Iterator<BigInteger> descendingIterator(){
+        return new DescendingItr();
+    }
+
+    /**
+     *Method to return a Spliterator over the elements in order.
+     *It snapshots the chunk layout when created and splits at the middle element, so the halves are always within one of
+     *each other in size regardless of how full the chunks are.  It reports ORDERED, SIZED, SUBSIZED and NONNULL, and
+     *throws ConcurrentModificationException if the list is structurally changed during traversal.
+     *Theta(n / CHUNK_CAPACITY) to create; each split is Theta(log(n / CHUNK_CAPACITY)).
+     */
+    public Spliterator<BigInteger> spliterator(){
+        int count = 0;
+        for(Chunk chunk = head; chunk != null; chunk = chunk.next){
+            count++;
+        }
+        Chunk[] chunks = new Chunk[count];
+        int[] starts = new int[count];
+        int[] offsets = new int[count];
+        int k = 0;
+        int offset = 0;
+        for(Chunk chunk = head; chunk != null; chunk = chunk.next){
+            chunks[k] = chunk;
+            starts[k] = chunk.start;
+            offsets[k] = offset;
+            offset += chunk.count();
+            k++;
+        }
+        return new ChunkSpliterator(chunks, starts, offsets, 0, size, modCount);
+    }
+
+    /**
+     * Method to return the first node of a DoubleNode chain holding the elements of the list.
+     * Post-Condition: returns the head of a snapshot chain, or null if the list is empty.  The chain is rebuilt only after
+     * the list changes, so getHead and getTail called without changes in between belong to the same chain.  Changes made
+     * through the nodes are not seen by the list.
+     * Theta(n) after a change, otherwise Theta(1).
+     * @deprecated iterate the list, or use get(int), instead of walking DoubleNodes.
+     */
+    @Deprecated
     public DoubleNode getHead(){
-        return head;
+        buildNodes();
+        return nodeHead;
     }
-    
+
     /**
-     * Method to return a pointer to the DoubleNode object which is the tail of the DoublyLinkedList.
-     * Post-Condition: returns reference to tail DoubleNode.
-     * Theta(1), constant time complexity.
+     * Method to return the last node of the DoubleNode chain described by getHead.
+     * Post-Condition: returns the tail of the snapshot chain, or null if the list is empty.
+     * Theta(n) after a change, otherwise Theta(1).
+     * @deprecated iterate the list, or use get(int), instead of walking DoubleNodes.
      */
+    @Deprecated
     public DoubleNode getTail(){
-        return tail;
+        buildNodes();
+        return nodeTail;
     }
-    
+
     /**
-     *Method to return the BigInteger contents of the DoubleNode objects as a String.
-     *Overrides: toString in class java.lang.Object
-     *Pre-Condition: null characters will be disregarded.  Must be valid, null-terminating DoublyLinkedList object.
+     *Method to return the BigInteger contents of the list as a String, each followed by a space.
+     *Overrides: toString in class java.util.AbstractCollection
      *Post-Condition: returns a String containing the BigIntegers in the list.
-     *Theta(n), linear time complexity.
+     *Theta(n), linear time complexity, using one StringBuilder.
      */
     public String toString(){
-        String listout = "";
-        DoubleNode cycleNode = new DoubleNode();
-        cycleNode = head;
-        while(cycleNode != null){
-            listout += cycleNode.toString() + " ";
-            cycleNode = cycleNode.getNext();
-        };
-        return listout;
+        StringBuilder listout = new StringBuilder();
+        for(Chunk chunk = head; chunk != null; chunk = chunk.next){
+            for(int i = chunk.start; i < chunk.end; i++){
+                listout.append(chunk.items[i]).append(' ');
+            }
+        }
+        return listout.toString();
+    }
+
+    /**
+     *Private method to remove the element at slot i of chunk, closing the gap by shifting the shorter side of the chunk
+     *and unlinking the chunk when it becomes empty.
+     *Post-Condition: returns true if elements after slot i moved down one slot, false if elements before it moved up.
+     */
+    private boolean removeAt(Chunk chunk, int i){
+        boolean shiftedDown;
+        if(i - chunk.start < chunk.end - 1 - i){
+            System.arraycopy(chunk.items, chunk.start, chunk.items, chunk.start + 1, i - chunk.start);
+            chunk.items[chunk.start++] = null;
+            shiftedDown = false;
+        } else {
+            System.arraycopy(chunk.items, i + 1, chunk.items, i, chunk.end - 1 - i);
+            chunk.items[--chunk.end] = null;
+            shiftedDown = true;
+        }
+        if(chunk.count() == 0){
+            if(chunk.prev == null){
+                head = chunk.next;
+            } else {
+                chunk.prev.next = chunk.next;
+            }
+            if(chunk.next == null){
+                tail = chunk.prev;
+            } else {
+                chunk.next.prev = chunk.prev;
+            }
+        }
+        size--;
+        modCount++;
+        return shiftedDown;
+    }
+
+    /**
+     *Private method to rebuild the DoubleNode snapshot if the list changed since it was last built.
+     */
+    private void buildNodes(){
+        if(nodeModCount == modCount){
+            return;
+        }
+        DoubleNode first = null;
+        DoubleNode last = null;
+        for(Chunk chunk = head; chunk != null; chunk = chunk.next){
+            for(int i = chunk.start; i < chunk.end; i++){
+                DoubleNode node = new DoubleNode(last, chunk.items[i], null);
+                if(last == null){
+                    first = node;
+                } else {
+                    last.setNext(node);
+                }
+                last = node;
+            }
+        }
+        nodeHead = first;
+        nodeTail = last;
+        nodeModCount = modCount;
+    }
+
+    private static void checkNotNull(BigInteger e){
+        if(e == null){
+            throw new NullPointerException("DoublyLinkedList does not permit null elements.");
+        }
+    }
+
+    /**
+     *Forward iterator.  chunk and index locate the next element; last and lastIndex locate the one returned most recently.
+     */
+    private final class Itr implements Iterator<BigInteger> {
+        Chunk chunk = head;
+        int index = head == null ? 0 : head.start;
+        Chunk last;
+        int lastIndex;
+        int expectedModCount = modCount;
+
+        public boolean hasNext(){
+            while(chunk != null && index >= chunk.end){
+                chunk = chunk.next;
+                if(chunk != null){
+                    index = chunk.start;
+                }
+            }
+            return chunk != null;
+        }
+
+        public BigInteger next(){
+            if(modCount != expectedModCount){
+                throw new ConcurrentModificationException();
+            }
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            last = chunk;
+            lastIndex = index;
+            return chunk.items[index++];
+        }
+
+        public void remove(){
+            if(last == null){
+                throw new IllegalStateException();
+            }
+            if(modCount != expectedModCount){
+                throw new ConcurrentModificationException();
+            }
+            boolean shiftedDown = removeAt(last, lastIndex);
+            if(last == chunk && shiftedDown){
+                index--;
+            }
+            last = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     *Backward iterator.  chunk and index locate the next element to return, moving toward the head.
+     */
+    private final class DescendingItr implements Iterator<BigInteger> {
+        Chunk chunk = tail;
+        int index = tail == null ? -1 : tail.end - 1;
+        Chunk last;
+        int lastIndex;
+        int expectedModCount = modCount;
+
+        public boolean hasNext(){
+            while(chunk != null && index < chunk.start){
+                chunk = chunk.prev;
+                if(chunk != null){
+                    index = chunk.end - 1;
+                }
+            }
+            return chunk != null;
+        }
+
+        public BigInteger next(){
+            if(modCount != expectedModCount){
+                throw new ConcurrentModificationException();
+            }
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            last = chunk;
+            lastIndex = index;
+            return chunk.items[index--];
+        }
+
+        public void remove(){
+            if(last == null){
+                throw new IllegalStateException();
+            }
+            if(modCount != expectedModCount){
+                throw new ConcurrentModificationException();
+            }
+            boolean shiftedDown = removeAt(last, lastIndex);
+            if(last == chunk && !shiftedDown){
+                index++;
+            }
+            last = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     *Spliterator over a snapshot of the chunk layout, covering the global element positions [origin, fence).
+     *offsets[k] is the position of the first element of chunks[k], and starts[k] is its slot within the chunk.
+     */
+    private final class ChunkSpliterator implements Spliterator<BigInteger> {
+        private final Chunk[] chunks;
+        private final int[] starts;
+        private final int[] offsets;
+        private final int expectedModCount;
+        private int origin;
+        private final int fence;
+        private int k;
+
+        ChunkSpliterator(Chunk[] chunks, int[] starts, int[] offsets, int origin, int fence, int expectedModCount){
+            this.chunks = chunks;
+            this.starts = starts;
+            this.offsets = offsets;
+            this.origin = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+            this.k = chunkOf(origin);
+        }
+
+        public boolean tryAdvance(Consumer<? super BigInteger> action){
+            if(origin >= fence){
+                return false;
+            }
+            while(k + 1 < chunks.length && offsets[k + 1] <= origin){
+                k++;
+            }
+            BigInteger e = chunks[k].items[starts[k] + origin - offsets[k]];
+            origin++;
+            action.accept(e);
+            if(modCount != expectedModCount){
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+
+        public void forEachRemaining(Consumer<? super BigInteger> action){
+            while(origin < fence){
+                int chunkEnd = k + 1 < chunks.length ? offsets[k + 1] : Integer.MAX_VALUE;
+                if(origin >= chunkEnd){
+                    k++;
+                    continue;
+                }
+                int stop = Math.min(fence, chunkEnd);
+                BigInteger[] items = chunks[k].items;
+                int base = starts[k] - offsets[k];
+                for(; origin < stop; origin++){
+                    action.accept(items[base + origin]);
+                }
+            }
+            if(modCount != expectedModCount){
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        public Spliterator<BigInteger> trySplit(){
+            int mid = (origin + fence) >>> 1;
+            if(mid <= origin){
+                return null;
+            }
+            ChunkSpliterator prefix = new ChunkSpliterator(chunks, starts, offsets, origin, mid, expectedModCount);
+            origin = mid;
+            k = chunkOf(mid);
+            return prefix;
+        }
+
+        public long estimateSize(){
+            return fence - origin;
+        }
+
+        public int characteristics(){
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        /**
+         *Private method to find the chunk holding a global position by binary search over offsets.
+         */
+        private int chunkOf(int position){
+            int low = 0;
+            int high = chunks.length - 1;
+            int found = 0;
+            while(low <= high){
+                int mid = (low + high) >>> 1;
+                if(offsets[mid] <= position){
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
     }
 
 }
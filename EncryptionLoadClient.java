@@ -0,0 +1,142 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class EncryptionLoadClient generates load against a running EncryptionServer on loopback.
+ * Each connection runs on its own thread and sends encrypt requests for random messages followed by a decrypt of each
+ * ciphertext, checking that the round trip returns the message.  It reports request throughput, latency percentiles
+ * and the number of failed round trips.
+ *
+ * Usage: java EncryptionLoadClient <PORT|SOCKET> <keyid> [--connections N] [--requests N] [--bytes N]
+ */
+public class EncryptionLoadClient {
+
+	/**
+     *One connection to the server speaking the EncryptionServer protocol.
+     */
+    static final class Connection implements AutoCloseable {
+        private final SocketChannel channel;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final byte[] id;
+
+        Connection(SocketAddress address, String keyId) throws IOException {
+            channel = address instanceof UnixDomainSocketAddress ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+            channel.connect(address);
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            id = keyId.getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         *Method to send one request and wait for its response.
+         *Post-Condition: returns the response payload, or throws IOException carrying the server's message on an error status.
+         */
+        byte[] call(byte op, byte[] payload) throws IOException {
+            out.writeInt(2 + id.length + payload.length);
+            out.writeByte(op);
+            out.writeByte(id.length);
+            out.write(id);
+            out.write(payload);
+            out.flush();
+            int frame = in.readInt();
+            byte status = in.readByte();
+            byte[] response = new byte[frame - 1];
+            in.readFully(response);
+            if(status != EncryptionServer.STATUS_OK){
+                throw new IOException(new String(response, StandardCharsets.UTF_8));
+            }
+            return response;
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2){
+            System.err.println("Usage: java EncryptionLoadClient <PORT|SOCKET> <keyid> [--connections N] [--requests N] [--bytes N]");
+            System.exit(2);
+        }
+        Map<String, String> options = new HashMap<>();
+        for(int i = 2; i + 1 < args.length; i += 2){
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        SocketAddress address = EncryptionServer.parseAddress(args[0]);
+        String keyId = args[1];
+        int connections = Integer.parseInt(options.getOrDefault("connections", "16"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "1000"));
+        int bytes = Integer.parseInt(options.getOrDefault("bytes", "64"));
+
+        long[][] latencies = new long[connections][2 * requests];
+        AtomicLong failures = new AtomicLong();
+        Thread[] threads = new Thread[connections];
+        long started = System.nanoTime();
+        for(int t = 0; t < connections; t++){
+            long[] times = latencies[t];
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                try(Connection connection = new Connection(address, keyId)){
+                    byte[] message = new byte[bytes];
+                    for(int i = 0; i < requests; i++){
+                        random.nextBytes(message);
+                        long t0 = System.nanoTime();
+                        byte[] ciphertext = connection.call(EncryptionServer.ENCRYPT, message);
+                        long t1 = System.nanoTime();
+                        byte[] plain = connection.call(EncryptionServer.DECRYPT, ciphertext);
+                        long t2 = System.nanoTime();
+                        times[2 * i] = t1 - t0;
+                        times[2 * i + 1] = t2 - t1;
+                        if(plain.length < bytes || !Arrays.equals(plain, 0, bytes, message, 0, bytes)){
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch(IOException e){
+                    System.err.println("Connection failed: " + e.getMessage());
+                    failures.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        long[] all = new long[2 * requests * connections];
+        for(int t = 0; t < connections; t++){
+            System.arraycopy(latencies[t], 0, all, t * 2 * requests, 2 * requests);
+        }
+        Arrays.sort(all);
+        System.out.printf("%d requests over %d connections in %.2f s: %.0f req/s%n", all.length, connections, seconds, all.length / seconds);
+        System.out.printf("latency us: p50 %.1f  p99 %.1f  max %.1f%n", percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1000.0);
+        System.out.println("failed round trips: " + failures.get());
+        if(failures.get() > 0){
+            System.exit(1);
+        }
+    }
+
+    /**
+     *Private method to return quantile p of sorted nanosecond latencies in microseconds.
+     */
+    private static double percentile(long[] sorted, double p){
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
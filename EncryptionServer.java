@@ -0,0 +1,305 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * The class EncryptionServer serves encrypt and decrypt requests for the keys of a KeyRing over a local TCP socket or a
+ * Unix-domain socket, so processes outside the JVM can share one warm cipher process.
+ * Each connection is handled on its own thread: a virtual thread when the JVM supports them, a pooled platform thread otherwise.
+ * Concurrent requests for the same key are coalesced into micro-batches.  Each key has at most one drain task at a time on
+ * the worker ForkJoinPool; it runs up to maxBatch queued requests in parallel and reschedules itself while requests remain.
+ * Connection threads only queue their request and wait for its own result.
+ *
+ * Protocol, all integers big-endian.  Request: frame length (int), op (byte, 1 = encrypt, 2 = decrypt), key id length (byte),
+ * key id (UTF-8), payload.  Response: frame length (int), status (byte, 0 = ok, 1 = error), payload.
+ * The encrypt payload is the plaintext, at most one block, and its response is the ciphertext as two's-complement bytes.
+ * The decrypt payload is the ciphertext, at most BlockStream.maxCiphertextBytes for the key, and its response is the full
+ * decrypted block.  An error response carries a UTF-8 message.
+ */
+public class EncryptionServer implements Closeable {
+
+	/**
+     *Protocol constants.
+     */
+    static final byte ENCRYPT = 1;
+    static final byte DECRYPT = 2;
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    static final int MAX_FRAME = 1 << 20;
+
+    /**
+     *One queued request and the result the batch fills in.
+     */
+    private static final class Request {
+        final byte op;
+        final byte[] payload;
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        Request(byte op, byte[] payload){
+            this.op = op;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     *The queue of pending requests for one key id, and the flag saying whether a drain task is scheduled for it.
+     */
+    private static final class Batcher {
+        final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+    }
+
+    /**
+     *Private instance variables for the EncryptionServer class.
+	 * ring - keys served.
+	 * server - listening channel.
+	 * connections - executor running one task per connection.
+	 * workers - pool that runs each batch in parallel.
+	 * batchers - request queue per key id.
+	 * maxBatch - largest number of requests run as one batch.
+     */
+    private final KeyRing ring;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections;
+    private final ForkJoinPool workers;
+    private final ConcurrentHashMap<String, Batcher> batchers = new ConcurrentHashMap<>();
+    private final int maxBatch;
+    private volatile boolean running;
+
+    /**
+     *Constructs a new EncryptionServer bound to address, which is an InetSocketAddress or a UnixDomainSocketAddress.
+     *Pre-Condition: maxBatch must be positive.
+     *Post-Condition: the socket is bound; call start() to accept connections.
+     */
+    EncryptionServer(KeyRing ring, SocketAddress address, ForkJoinPool workers, int maxBatch) throws IOException {
+        this.ring = ring;
+        this.workers = workers;
+        this.maxBatch = maxBatch;
+        if(address instanceof UnixDomainSocketAddress){
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        connections = newConnectionExecutor();
+    }
+
+    /**
+     *Method to accept connections on the calling thread until close() is called.
+     */
+    public void run(){
+        running = true;
+        while(running){
+            try {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel));
+            } catch(IOException e){
+                if(running){
+                    System.err.println("EncryptionServer accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     *Method to start accepting connections on a background thread.
+     */
+    public void start(){
+        running = true;
+        connections.execute(this::run);
+    }
+
+    /**
+     *Method to return the address the server is bound to, including the port chosen when binding to port 0.
+     */
+    public SocketAddress returnAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /**
+     *Method to stop accepting connections and release the socket.  Connections already open are closed by their clients.
+     */
+    public void close() throws IOException {
+        running = false;
+        SocketAddress address = server.getLocalAddress();
+        server.close();
+        connections.shutdownNow();
+        if(address instanceof UnixDomainSocketAddress){
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    /**
+     *Private method to handle one connection until the client closes it.
+     */
+    private void serve(SocketChannel channel){
+        try(SocketChannel ch = channel;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 1 << 14));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 14))){
+            while(true){
+                int frame;
+                try {
+                    frame = in.readInt();
+                } catch(EOFException e){
+                    return;
+                }
+                if(frame < 2 || frame > MAX_FRAME){
+                    throw new IOException("Invalid frame length " + frame + ".");
+                }
+                byte op = in.readByte();
+                int idLength = in.readUnsignedByte();
+                if(idLength + 2 > frame){
+                    throw new IOException("Invalid key id length " + idLength + ".");
+                }
+                byte[] id = new byte[idLength];
+                in.readFully(id);
+                byte[] payload = new byte[frame - 2 - idLength];
+                in.readFully(payload);
+
+                byte status = STATUS_OK;
+                byte[] response;
+                try {
+                    response = submit(new String(id, StandardCharsets.UTF_8), new Request(op, payload)).join();
+                } catch(RuntimeException e){
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    status = STATUS_ERROR;
+                    response = String.valueOf(cause.getMessage()).getBytes(StandardCharsets.UTF_8);
+                }
+                out.writeInt(1 + response.length);
+                out.writeByte(status);
+                out.write(response);
+                out.flush();
+            }
+        } catch(IOException e){
+            if(running){
+                System.err.println("EncryptionServer connection closed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     *Private method to queue a request for its key and make sure a drain task is scheduled for that key.
+     *Post-Condition: returns a future completed with the response payload or with the request's exception.
+     *Throws IllegalArgumentException for an unknown key id before anything is queued.
+     */
+    private CompletableFuture<byte[]> submit(String id, Request request){
+        ring.key(id);
+        Batcher batcher = batchers.computeIfAbsent(id, k -> new Batcher());
+        batcher.queue.add(request);
+        schedule(id, batcher);
+        return request.result;
+    }
+
+    /**
+     *Private method to start a drain task for a key if its queue is non-empty and no task is already scheduled.
+     *Because every enqueue and every finished batch calls this after the queue changes, a queued request is never stranded.
+     */
+    private void schedule(String id, Batcher batcher){
+        if(!batcher.queue.isEmpty() && batcher.draining.compareAndSet(false, true)){
+            try {
+                workers.execute(() -> drain(id, batcher));
+            } catch(RuntimeException e){
+                batcher.draining.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     *Private method, run on the worker pool, to run one batch of up to maxBatch requests for a key and then reschedule
+     *if more are waiting.  Running one batch per task keeps a busy key from starving the others.
+     */
+    private void drain(String id, Batcher batcher){
+        try {
+            List<Request> batch = new ArrayList<>();
+            Request next;
+            while(batch.size() < maxBatch && (next = batcher.queue.poll()) != null){
+                batch.add(next);
+            }
+            runBatch(id, batch);
+        } finally {
+            batcher.draining.set(false);
+        }
+        schedule(id, batcher);
+    }
+
+    /**
+     *Private method to run one batch of requests for a key in parallel and complete their futures.
+     *Decrypt payloads longer than any ciphertext of the key fail before any reduction is done.
+     *Pre-Condition: called from a worker thread, so the parallel stream runs on the worker pool.
+     */
+    private void runBatch(String id, List<Request> batch){
+        IntStream.range(0, batch.size()).parallel().forEach(i -> {
+            Request request = batch.get(i);
+            try {
+                if(request.op == ENCRYPT){
+                    request.result.complete(ring.encrypt(id, request.payload).toByteArray());
+                } else if(request.op == DECRYPT){
+                    int maxBytes = BlockStream.maxCiphertextBytes(ring.key(id));
+                    if(request.payload.length > maxBytes){
+                        throw new IllegalArgumentException("Ciphertext of " + request.payload.length + " bytes exceeds the largest of "
+                            + maxBytes + " bytes for key " + id + ".");
+                    }
+                    request.result.complete(ring.decrypt(id, new BigInteger(request.payload)));
+                } else {
+                    throw new IllegalArgumentException("Unknown operation " + request.op + ".");
+                }
+            } catch(RuntimeException e){
+                request.result.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     *Private method to return an executor that starts a virtual thread per task on JVMs that have them (Java 21 and later),
+     *and a cached pool of daemon platform threads otherwise.
+     */
+    private static ExecutorService newConnectionExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e){
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "encryption-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     *Method to parse a listen address: a port number binds TCP on the loopback interface, anything else is a Unix-domain socket path.
+     */
+    static SocketAddress parseAddress(String address){
+        if(address.matches("\\d+")){
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        return UnixDomainSocketAddress.of(Path.of(address));
+    }
+}
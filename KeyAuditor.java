@@ -0,0 +1,396 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.random.RandomGenerator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The class KeyAuditor screens generated keys for weakness to lattice attacks on the knapsack.
+ * For each key it computes the knapsack density n / log2(max b).  It then encrypts a random test message and runs
+ * the Coster-Joux-LaMacchia-Odlyzko-Schnorr-Stern attack on it: LLL reduction of the lattice spanned by
+ * (2 e_i, 2 N b_i) for every element of b and (1, ..., 1, 2 N c), within a time budget.  A reduced basis vector of the
+ * form (+-1, ..., +-1, 0) gives away the message, and the key is reported as broken.
+ * Reduction uses Cohen's integral LLL (Algorithm 2.6.7), so every Gram-Schmidt quantity is an exact integer.  The
+ * per-row updates of a swap and of a size reduction run in parallel on the pool once the lattice is large enough.
+ * auditAll screens a whole batch of keys on the same pool, and main screens key files from the command line.
+ */
+public class KeyAuditor {
+
+	/**
+     *Density below which the CJLOSS attack succeeds for almost all knapsacks, given an exact shortest vector.
+     */
+    public static final double CJLOSS_DENSITY = 0.9408;
+
+    /**
+     *Smallest number of rows an update must touch before it is split across the pool.
+     */
+    static final int PARALLEL_ROWS = 64;
+
+    /**
+     *LLL parameter delta = DELTA_NUM / DELTA_DEN.
+     */
+    private static final BigInteger DELTA_NUM = BigInteger.valueOf(99);
+    private static final BigInteger DELTA_DEN = BigInteger.valueOf(100);
+
+    /**
+     *Result of the lattice attack.
+     * BROKEN - the reduced basis revealed the test message.
+     * RESISTED - reduction finished without revealing it.
+     * TIMEOUT - the time budget ran out first.
+     */
+    public enum Outcome { BROKEN, RESISTED, TIMEOUT }
+
+    /**
+     *Audit result for one key.
+     */
+    public static final class Report {
+        private final int vectorLength;
+        private final double density;
+        private final Outcome outcome;
+        private final long millis;
+
+        Report(int vectorLength, double density, Outcome outcome, long millis){
+            this.vectorLength = vectorLength;
+            this.density = density;
+            this.outcome = outcome;
+            this.millis = millis;
+        }
+
+        public int returnVectorLength(){
+            return vectorLength;
+        }
+
+        public double returnDensity(){
+            return density;
+        }
+
+        public Outcome returnOutcome(){
+            return outcome;
+        }
+
+        public long returnMillis(){
+            return millis;
+        }
+
+        /**
+         *Method to return true if the key fell to the lattice attack or its density is below CJLOSS_DENSITY.
+         */
+        public boolean isWeak(){
+            return outcome == Outcome.BROKEN || density < CJLOSS_DENSITY;
+        }
+
+        public String toString(){
+            return String.format("n=%d density=%.4f lattice=%s (%d ms)%s", vectorLength, density, outcome, millis, isWeak() ? " WEAK" : "");
+        }
+    }
+
+    /**
+     *Thrown inside the reduction when the time budget runs out.
+     */
+    private static final class BudgetExceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BudgetExceeded(){
+            super(null, null, false, false);
+        }
+    }
+
+	/**
+     *Private instance variables for the KeyAuditor class.
+	 * Long budgetNanos - time allowed for one lattice reduction.
+	 * ForkJoinPool pool - pool for parallel row updates and batch audits.
+	 * RandomGenerator random - source of test messages.
+     */
+    private final long budgetNanos;
+    private final ForkJoinPool pool;
+    private final RandomGenerator random;
+
+    /**
+     *Constructs a new KeyAuditor.
+     *Pre-Condition: budgetMillis must be positive.
+     */
+    KeyAuditor(long budgetMillis, ForkJoinPool pool, RandomGenerator random){
+        if(budgetMillis <= 0){
+            throw new IllegalArgumentException("Time budget must be positive.");
+        }
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.pool = pool;
+        this.random = random;
+    }
+
+    /**
+     *Method to return the knapsack density n / log2(max b) of a public key.
+     *Theta(n), linear time complexity.
+     */
+    public static double density(KeyVector b){
+        BigInteger max = BigInteger.ZERO;
+        for(int i = 0; i < b.length(); i++){
+            if(b.get(i).compareTo(max) > 0){
+                max = b.get(i);
+            }
+        }
+        return b.length() / log2(max);
+    }
+
+    /**
+     *Method to audit one key: density plus a budgeted lattice attack on one random test message.
+     */
+    public Report audit(MerkleHellmanKey key){
+        return pool.submit(() -> auditInPool(key)).join();
+    }
+
+    /**
+     *Method to audit many keys, spread across the pool.
+     *Post-Condition: returns reports in the same order as keys.
+     */
+    public List<Report> auditAll(List<MerkleHellmanKey> keys){
+        Report[] reports = new Report[keys.size()];
+        pool.submit(() -> IntStream.range(0, reports.length).parallel()
+                .forEach(i -> reports[i] = auditInPool(keys.get(i)))).join();
+        return Arrays.asList(reports);
+    }
+
+    /**
+     *Method to list keys from a batch that should not be deployed.
+     */
+    public static List<Report> weak(List<Report> reports){
+        return reports.stream().filter(Report::isWeak).collect(Collectors.toList());
+    }
+
+    /**
+     *Main method: audits every key file named on the command line and exits with status 1 if any key is weak.
+     *Usage: java KeyAuditor [--budget MS] key.mhk...
+     */
+    public static void main(String[] args) throws IOException {
+        long budget = 10_000;
+        List<MerkleHellmanKey> keys = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("--budget") && i + 1 < args.length){
+                budget = Long.parseLong(args[++i]);
+            } else {
+                keys.add(KeyFile.load(Paths.get(args[i])));
+                names.add(args[i]);
+            }
+        }
+        List<Report> reports = new KeyAuditor(budget, ForkJoinPool.commonPool(), new SecureRandom()).auditAll(keys);
+        for(int i = 0; i < reports.size(); i++){
+            System.out.println(names.get(i) + ": " + reports.get(i));
+        }
+        System.exit(weak(reports).isEmpty() ? 0 : 1);
+    }
+
+    /**
+     *Private method that runs one audit on a pool thread, so the parallel streams inside the reduction use the same pool.
+     */
+    private Report auditInPool(MerkleHellmanKey key){
+        long started = System.nanoTime();
+        KeyVector b = key.bVector();
+        int n = b.length();
+        double density = density(b);
+
+        byte[] message = new byte[key.returnBlockBytes()];
+        synchronized(random){
+            random.nextBytes(message);
+        }
+        boolean[] bits = new boolean[n];
+        for(int i = 0; i < 8 * message.length; i++){
+            bits[i] = ((message[i >>> 3] >>> (7 - (i & 7))) & 1) != 0;
+        }
+        BigInteger ciphertext = key.encrypt(message);
+
+        BigInteger[][] basis = cjlossBasis(b, ciphertext);
+        Outcome outcome;
+        try {
+            reduce(basis, started + budgetNanos);
+            outcome = recovers(basis, bits) ? Outcome.BROKEN : Outcome.RESISTED;
+        } catch(BudgetExceeded e){
+            outcome = recovers(basis, bits) ? Outcome.BROKEN : Outcome.TIMEOUT;
+        }
+        return new Report(n, density, outcome, (System.nanoTime() - started) / 1_000_000L);
+    }
+
+    /**
+     *Private method to build the CJLOSS lattice basis, scaled by 2 so that every entry is an integer.
+     *N is chosen larger than sqrt(n) so that short vectors must have a zero last coordinate.
+     */
+    private static BigInteger[][] cjlossBasis(KeyVector b, BigInteger ciphertext){
+        int n = b.length();
+        BigInteger twoN = BigInteger.valueOf(2L * ((long) Math.ceil(Math.sqrt(n)) + 1));
+        BigInteger[][] basis = new BigInteger[n + 1][n + 1];
+        for(int i = 0; i <= n; i++){
+            Arrays.fill(basis[i], BigInteger.ZERO);
+        }
+        for(int i = 0; i < n; i++){
+            basis[i][i] = BigInteger.TWO;
+            basis[i][n] = twoN.multiply(b.get(i));
+            basis[n][i] = BigInteger.ONE;
+        }
+        basis[n][n] = twoN.multiply(ciphertext);
+        return basis;
+    }
+
+    /**
+     *Private method to check whether some basis vector is +-(2x - 1, 0) for the test message bits x.
+     */
+    private static boolean recovers(BigInteger[][] basis, boolean[] bits){
+        int n = bits.length;
+        for(BigInteger[] row : basis){
+            if(row[n].signum() != 0){
+                continue;
+            }
+            for(int sign = -1; sign <= 1; sign += 2){
+                boolean match = true;
+                for(int i = 0; i < n && match; i++){
+                    int expected = sign * (bits[i] ? 1 : -1);
+                    match = row[i].equals(BigInteger.valueOf(expected));
+                }
+                if(match){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     *Private method running Cohen's integral LLL in place on the rows of basis, with rows 1-indexed internally.
+     *d[i] is the Gram determinant of the first i rows and lambda[k][j] = d[j] * mu[k][j], all exact integers.
+     *Pre-Condition: the rows are linearly independent.
+     *Throws BudgetExceeded once System.nanoTime() passes deadline.
+     */
+    private void reduce(BigInteger[][] basis, long deadline){
+        int m = basis.length;
+        BigInteger[][] b = new BigInteger[m + 1][];
+        System.arraycopy(basis, 0, b, 1, m);
+        BigInteger[] d = new BigInteger[m + 1];
+        BigInteger[][] lambda = new BigInteger[m + 1][m + 1];
+        d[0] = BigInteger.ONE;
+        d[1] = dot(b[1], b[1]);
+        int k = 2;
+        int kmax = 1;
+
+        while(k <= m){
+            if(System.nanoTime() > deadline){
+                System.arraycopy(b, 1, basis, 0, m);
+                throw new BudgetExceeded();
+            }
+            if(k > kmax){
+                kmax = k;
+                for(int j = 1; j <= k; j++){
+                    BigInteger u = dot(b[k], b[j]);
+                    for(int i = 1; i < j; i++){
+                        u = d[i].multiply(u).subtract(lambda[k][i].multiply(lambda[j][i])).divide(d[i - 1]);
+                    }
+                    if(j < k){
+                        lambda[k][j] = u;
+                    } else {
+                        if(u.signum() == 0){
+                            throw new ArithmeticException("Lattice basis is linearly dependent.");
+                        }
+                        d[k] = u;
+                    }
+                }
+            }
+            sizeReduce(b, d, lambda, k, k - 1);
+            BigInteger lhs = DELTA_DEN.multiply(d[k].multiply(d[k - 2]).add(lambda[k][k - 1].pow(2)));
+            BigInteger rhs = DELTA_NUM.multiply(d[k - 1].pow(2));
+            if(lhs.compareTo(rhs) < 0){
+                swap(b, d, lambda, k, kmax);
+                k = Math.max(2, k - 1);
+            } else {
+                for(int l = k - 2; l >= 1; l--){
+                    sizeReduce(b, d, lambda, k, l);
+                }
+                k++;
+            }
+        }
+        System.arraycopy(b, 1, basis, 0, m);
+    }
+
+    /**
+     *Private method REDI(k, l): subtract the nearest-integer multiple of row l from row k.
+     */
+    private void sizeReduce(BigInteger[][] b, BigInteger[] d, BigInteger[][] lambda, int k, int l){
+        if(lambda[k][l].shiftLeft(1).abs().compareTo(d[l]) <= 0){
+            return;
+        }
+        BigInteger q = roundDiv(lambda[k][l], d[l]);
+        BigInteger[] rowK = b[k];
+        BigInteger[] rowL = b[l];
+        forRange(0, rowK.length, i -> rowK[i] = rowK[i].subtract(q.multiply(rowL[i])));
+        lambda[k][l] = lambda[k][l].subtract(q.multiply(d[l]));
+        forRange(1, l, i -> lambda[k][i] = lambda[k][i].subtract(q.multiply(lambda[l][i])));
+    }
+
+    /**
+     *Private method SWAPI(k): exchange rows k and k - 1 and update d and lambda exactly.
+     */
+    private void swap(BigInteger[][] b, BigInteger[] d, BigInteger[][] lambda, int k, int kmax){
+        BigInteger[] row = b[k];
+        b[k] = b[k - 1];
+        b[k - 1] = row;
+        for(int j = 1; j <= k - 2; j++){
+            BigInteger t = lambda[k][j];
+            lambda[k][j] = lambda[k - 1][j];
+            lambda[k - 1][j] = t;
+        }
+        BigInteger lam = lambda[k][k - 1];
+        BigInteger dk = d[k];
+        BigInteger dk1 = d[k - 1];
+        BigInteger newD = d[k - 2].multiply(dk).add(lam.pow(2)).divide(dk1);
+        forRange(k + 1, kmax + 1, i -> {
+            BigInteger t = lambda[i][k];
+            lambda[i][k] = dk.multiply(lambda[i][k - 1]).subtract(lam.multiply(t)).divide(dk1);
+            lambda[i][k - 1] = newD.multiply(t).add(lam.multiply(lambda[i][k])).divide(dk);
+        });
+        d[k - 1] = newD;
+    }
+
+    /**
+     *Private method to run body for every index in [from, to), in parallel on the pool when the range is large.
+     */
+    private static void forRange(int from, int to, IntConsumer body){
+        if(to - from >= PARALLEL_ROWS){
+            IntStream.range(from, to).parallel().forEach(body);
+        } else {
+            for(int i = from; i < to; i++){
+                body.accept(i);
+            }
+        }
+    }
+
+    private static BigInteger dot(BigInteger[] x, BigInteger[] y){
+        BigInteger sum = BigInteger.ZERO;
+        for(int i = 0; i < x.length; i++){
+            if(x[i].signum() != 0 && y[i].signum() != 0){
+                sum = sum.add(x[i].multiply(y[i]));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     *Private method to return the integer nearest to a / d, rounding halves up.
+     *Pre-Condition: d is positive.
+     */
+    private static BigInteger roundDiv(BigInteger a, BigInteger d){
+        BigInteger[] qr = a.shiftLeft(1).add(d).divideAndRemainder(d.shiftLeft(1));
+        return qr[1].signum() < 0 ? qr[0].subtract(BigInteger.ONE) : qr[0];
+    }
+
+    /**
+     *Private method to return log2 of a positive BigInteger to double precision.
+     */
+    private static double log2(BigInteger value){
+        int shift = Math.max(0, value.bitLength() - 53);
+        return shift + Math.log(value.shiftRight(shift).doubleValue()) / Math.log(2);
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The class KeyFile saves and loads MerkleHellmanKey objects in a compact, versioned binary format, so a key can be reused
+ * across restarts and shared by several processes instead of being regenerated with createw() and createb().
+ * All integers are big-endian.  The layout is:
+ *   magic "MHKF" (4 bytes), version (int), vectorlength (int),
+ *   q, r, then vectorlength elements of w, then vectorlength elements of b,
+ * where each BigInteger is written as its two's-complement byte length (int) followed by those bytes.
+ * Loading memory-maps the file and reads the integers straight from the mapping.
+ */
+public class KeyFile {
+
+	/**
+     *Constants identifying the file format.
+     */
+    static final int MAGIC = 0x4D484B46;
+    static final int VERSION = 1;
+
+    /**
+     *Private constructor; KeyFile only has static methods.
+     */
+    private KeyFile(){
+    }
+
+    /**
+     *Method to write a key to a file, replacing any existing file.
+     *Pre-Condition: key must be non-null.
+     *Post-Condition: path holds the key in the format described above.
+     *Theta(N), linear in the total size of the key.
+     */
+    public static void save(MerkleHellmanKey key, Path path) throws IOException {
+        KeyVector w = key.wVector();
+        KeyVector b = key.bVector();
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(w.length());
+            writeInt(out, key.returnQ());
+            writeInt(out, key.returnR());
+            for(int i = 0; i < w.length(); i++){
+                writeInt(out, w.get(i));
+            }
+            for(int i = 0; i < b.length(); i++){
+                writeInt(out, b.get(i));
+            }
+        }
+    }
+
+    /**
+     *Method to read a key written by save.
+     *Pre-Condition: path must name a key file of a supported version.
+     *Post-Condition: returns a new MerkleHellmanKey.  Throws IOException if the file is not a key file, has an unsupported version or is truncated.
+     *Theta(N), linear in the total size of the key.
+     */
+    public static MerkleHellmanKey load(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.remaining() < 12 || buffer.getInt() != MAGIC){
+                throw new IOException("Not a MerkleHellman key file: " + path);
+            }
+            int version = buffer.getInt();
+            if(version != VERSION){
+                throw new IOException("Unsupported key file version " + version + ": " + path);
+            }
+            int length = buffer.getInt();
+            // Each of the 2 * length elements takes at least 5 bytes, so a larger count cannot fit in the file.
+            if(length < 0 || length > (channel.size() - 12) / 10){
+                throw new IOException("Corrupt key file, invalid vector length " + length + ": " + path);
+            }
+            // q is the largest integer in the file, so its length is enough scratch space for every element.
+            if(buffer.remaining() < 4){
+                throw new IOException("Truncated key file: " + path);
+            }
+            int qSize = buffer.getInt(buffer.position());
+            if(qSize <= 0 || qSize > buffer.remaining() - 4){
+                throw new IOException("Corrupt key file, invalid integer length " + qSize + ": " + path);
+            }
+            byte[] scratch = new byte[qSize];
+            BigInteger q = readInt(buffer, scratch);
+            BigInteger r = readInt(buffer, scratch);
+            KeyVector w = new KeyVector(length);
+            KeyVector b = new KeyVector(length);
+            for(int i = 0; i < length; i++){
+                w.set(i, readInt(buffer, scratch));
+            }
+            for(int i = 0; i < length; i++){
+                b.set(i, readInt(buffer, scratch));
+            }
+            return MerkleHellmanKey.wrap(w, b, q, r);
+        } catch(BufferUnderflowException e){
+            throw new IOException("Truncated key file: " + path, e);
+        }
+    }
+
+    /**
+     *Private method to write one length-prefixed BigInteger.
+     */
+    private static void writeInt(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     *Private method to read one length-prefixed BigInteger, reusing scratch when it is large enough.
+     */
+    private static BigInteger readInt(MappedByteBuffer buffer, byte[] scratch) throws IOException {
+        int size = buffer.getInt();
+        if(size <= 0 || size > buffer.remaining()){
+            throw new IOException("Corrupt key file, invalid integer length " + size + ".");
+        }
+        byte[] bytes = size <= scratch.length ? scratch : new byte[size];
+        buffer.get(bytes, 0, size);
+        return new BigInteger(bytes, 0, size);
+    }
+}
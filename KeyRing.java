@@ -0,0 +1,252 @@
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class KeyRing holds many MerkleHellmanKey objects, one per tenant, and looks them up by id.
+ * Derived per-key state, the DecryptionContext and an optional WindowedEncryptor, is built lazily on first use and kept in a
+ * weight-bounded LRU cache, so heap use stays bounded as the number of tenants grows while hot keys stay fast.
+ * The cache is split into independently locked stripes chosen by key id, so requests for different tenants rarely contend,
+ * and key lookups themselves are lock-free.  No entry is heavier than one stripe's share of the budget: a key whose
+ * encryption tables would not fit is cached without them and encrypts directly, and state that would not fit even then is
+ * returned without being cached.  Both cases are counted by returnOversized().
+ */
+public class KeyRing {
+
+	/**
+     *The derived state cached for one key, with the key it was built from and its estimated heap weight in bytes.
+     */
+    static final class DerivedState {
+        final MerkleHellmanKey key;
+        final DecryptionContext context;
+        final WindowedEncryptor encryptor;
+        final long weight;
+
+        DerivedState(MerkleHellmanKey key, int windowBits, long limit){
+            this.key = key;
+            context = new DecryptionContext(key.returnQ(), key.returnR());
+            long contextBytes = 3L * KeyVector.estimateBytes(key.returnQ().bitLength());
+            boolean tables = windowBits > 0 && contextBytes + WindowedEncryptor.estimateTableBytes(key, windowBits) <= limit;
+            encryptor = tables ? new WindowedEncryptor(key, windowBits) : null;
+            weight = contextBytes + (encryptor == null ? 0 : encryptor.returnTableBytes());
+        }
+    }
+
+    /**
+     *One stripe of the cache: an access-ordered map and the weight of its entries, guarded by the stripe's monitor.
+     */
+    private static final class Stripe {
+        final LinkedHashMap<String, DerivedState> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long weight;
+    }
+
+    /**
+     *Private instance variables for the KeyRing class.
+	 * keys - all registered keys by id.
+	 * stripes - cache stripes; stripes.length is a power of two.
+	 * stripeLimit - largest total weight one stripe may hold.
+	 * windowBits - window width for WindowedEncryptor, or 0 to encrypt with the key directly.
+	 * hits, misses, evictions, oversized - cache statistics.
+     */
+    private final ConcurrentHashMap<String, MerkleHellmanKey> keys = new ConcurrentHashMap<>();
+    private final Stripe[] stripes;
+    private final long stripeLimit;
+    private final int windowBits;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+
+    /**
+     *Constructs a new KeyRing.
+     *Pre-Condition: maxWeight is the total cache budget in bytes and must be positive.  stripeCount is rounded up to a power of two.
+     *windowBits is passed to WindowedEncryptor, or 0 to skip building encryption tables.
+     */
+    KeyRing(long maxWeight, int stripeCount, int windowBits){
+        if(maxWeight <= 0 || stripeCount <= 0){
+            throw new IllegalArgumentException("Cache weight and stripe count must be positive.");
+        }
+        int count = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        stripes = new Stripe[count];
+        for(int i = 0; i < count; i++){
+            stripes[i] = new Stripe();
+        }
+        stripeLimit = Math.max(1, maxWeight / count);
+        this.windowBits = windowBits;
+    }
+
+    /**
+     *Method to register or replace the key for an id.  Any cached state for the old key is dropped.
+     */
+    public void addKey(String id, MerkleHellmanKey key){
+        keys.put(id, key);
+        invalidate(id);
+    }
+
+    /**
+     *Method to remove the key for an id together with its cached state.
+     *Post-Condition: returns the removed key, or null if there was none.
+     */
+    public MerkleHellmanKey removeKey(String id){
+        MerkleHellmanKey removed = keys.remove(id);
+        invalidate(id);
+        return removed;
+    }
+
+    /**
+     *Method to return the key for an id.  Lock-free.
+     *Post-Condition: returns the key, or throws IllegalArgumentException if the id is unknown.
+     */
+    public MerkleHellmanKey key(String id){
+        MerkleHellmanKey key = keys.get(id);
+        if(key == null){
+            throw new IllegalArgumentException("Unknown key id: " + id);
+        }
+        return key;
+    }
+
+    /**
+     *Method to encrypt a message with the key for an id, using its cached WindowedEncryptor when tables are enabled and
+     *fit in the cache.
+     */
+    public BigInteger encrypt(String id, byte[] input){
+        MerkleHellmanKey key = key(id);
+        if(windowBits == 0){
+            return key.encrypt(input);
+        }
+        WindowedEncryptor encryptor = derived(id, key).encryptor;
+        return encryptor == null ? key.encrypt(input) : encryptor.encrypt(input);
+    }
+
+    /**
+     *Method to decrypt a ciphertext with the key for an id, using its cached DecryptionContext.
+     */
+    public byte[] decrypt(String id, BigInteger ciphertext){
+        MerkleHellmanKey key = key(id);
+        byte[] message = new byte[key.returnBlockBytes()];
+        key.decrypt(ciphertext, derived(id, key).context, message, 0);
+        return message;
+    }
+
+    /**
+     *Methods to return cache statistics.
+     */
+    public long returnHits(){
+        return hits.sum();
+    }
+
+    public long returnMisses(){
+        return misses.sum();
+    }
+
+    public long returnEvictions(){
+        return evictions.sum();
+    }
+
+    /**
+     *Method to return how many times derived state was too heavy for a stripe, so it was built without encryption tables
+     *or returned without being cached.
+     */
+    public long returnOversized(){
+        return oversized.sum();
+    }
+
+    public double returnHitRate(){
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     *Method to return the total estimated weight in bytes of all cached state.
+     */
+    public long returnWeight(){
+        long total = 0;
+        for(Stripe stripe : stripes){
+            synchronized(stripe){
+                total += stripe.weight;
+            }
+        }
+        return total;
+    }
+
+    /**
+     *Method to return the number of registered keys.
+     */
+    public int size(){
+        return keys.size();
+    }
+
+    /**
+     *Package-private method to return the cached state for a key, building it outside the stripe lock on a miss.
+     *If two threads miss at once, both build and the first to finish is kept.  Cached state built from a different key
+     *than the caller's, because addKey replaced the key in between, is never returned: it counts as a miss, and the
+     *state built for the caller's key replaces it only if that key is still the registered one.
+     */
+    DerivedState derived(String id, MerkleHellmanKey key){
+        Stripe stripe = stripeFor(id);
+        synchronized(stripe){
+            DerivedState state = stripe.entries.get(id);
+            if(state != null && state.key == key){
+                hits.increment();
+                return state;
+            }
+        }
+        misses.increment();
+        DerivedState built = new DerivedState(key, windowBits, stripeLimit);
+        if((windowBits > 0 && built.encryptor == null) || built.weight > stripeLimit){
+            oversized.increment();
+        }
+        if(built.weight > stripeLimit){
+            return built;
+        }
+        synchronized(stripe){
+            if(keys.get(id) != key){
+                return built;
+            }
+            DerivedState existing = stripe.entries.get(id);
+            if(existing != null && existing.key == key){
+                return existing;
+            }
+            if(existing != null){
+                stripe.weight -= existing.weight;
+            }
+            stripe.entries.put(id, built);
+            stripe.weight += built.weight;
+            Iterator<Map.Entry<String, DerivedState>> eldest = stripe.entries.entrySet().iterator();
+            // built fits in stripeLimit by itself and is the newest entry, so eviction stops before reaching it.
+            while(stripe.weight > stripeLimit){
+                Map.Entry<String, DerivedState> entry = eldest.next();
+                stripe.weight -= entry.getValue().weight;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        return built;
+    }
+
+    /**
+     *Private method to drop the cached state for an id.
+     */
+    private void invalidate(String id){
+        Stripe stripe = stripeFor(id);
+        synchronized(stripe){
+            DerivedState removed = stripe.entries.remove(id);
+            if(removed != null){
+                stripe.weight -= removed.weight;
+            }
+        }
+    }
+
+    /**
+     *Private method to pick the stripe for an id from its spread hash code.
+     */
+    private Stripe stripeFor(String id){
+        int h = id.hashCode();
+        h ^= h >>> 16;
+        return stripes[h & (stripes.length - 1)];
+    }
+}
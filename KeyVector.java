@@ -0,0 +1,148 @@
+import java.math.BigInteger;
+
+/**
+ * The class KeyVector holds a fixed-length, indexed sequence of BigIntegers used for the Merkle-Hellman keys w and b.
+ * Elements are stored in one contiguous array, so the encryption and decryption loops address them directly by index
+ * instead of following DoubleNode pointers.
+ */
+public class KeyVector {
+
+	/**
+     *Private instance variables holding the BigInteger elements of the vector and, once limbs() has been called,
+     *the same elements as LimbInteger limb arrays with their significant lengths.  The limb copy is dropped whenever an element is changed.
+     */
+    private final BigInteger[] ints;
+    private volatile long[][] limbs;
+    private volatile int[] limbLengths;
+
+    /**
+     *Constructs a new KeyVector object with the given number of elements, each initialized to zero.
+     *Pre-Condition: length must be a non-negative integer.
+     */
+    KeyVector(int length){
+        ints = new BigInteger[length];
+        for(int i = 0; i < length; i++){
+            ints[i] = BigInteger.ZERO;
+        }
+    }
+
+    /**
+     *Method to return the BigInteger stored at index i.
+     *Pre-Condition: 0 <= i < length().
+     *Post-Condition: returns reference to the BigInteger at index i.
+     *Theta(1), constant time complexity.
+     */
+    public BigInteger get(int i){
+        return ints[i];
+    }
+
+    /**
+     *Method to return a new KeyVector holding the same elements.
+     *Post-Condition: returns a copy that shares no array with this vector.
+     *Theta(n), linear time complexity.
+     */
+    public KeyVector copy(){
+        KeyVector result = new KeyVector(ints.length);
+        System.arraycopy(ints, 0, result.ints, 0, ints.length);
+        return result;
+    }
+
+    /**
+     *Method to update the BigInteger stored at index i.
+     *Pre-Condition: 0 <= i < length() and a valid BigInteger element is passed to the method's argument.
+     *Post-Condition: the element at index i is replaced by Int1.
+     *Theta(1), constant time complexity.
+     */
+    public void set(int i, BigInteger Int1){
+        ints[i] = Int1;
+        limbs = null;
+        limbLengths = null;
+    }
+
+    /**
+     *Method to return the elements as limb arrays for LimbInteger arithmetic, building them on first use.
+     *Every array has limbWidth() limbs, which leaves room to add all elements together without overflow.
+     *Post-Condition: returns the cached arrays; callers must not modify them.
+     *Theta(n) the first time after a change, Theta(1) afterwards.
+     */
+    public long[][] limbs(){
+        long[][] result = limbs;
+        if(result == null){
+            int bits = 0;
+            for(int i = 0; i < ints.length; i++){
+                bits = Math.max(bits, ints[i].bitLength());
+            }
+            int width = LimbInteger.widthFor(bits + 32);
+            result = new long[ints.length][];
+            int[] lengths = new int[ints.length];
+            for(int i = 0; i < ints.length; i++){
+                result[i] = LimbInteger.toLimbs(ints[i], width);
+                lengths[i] = LimbInteger.significantLength(result[i]);
+            }
+            limbLengths = lengths;
+            limbs = result;
+        }
+        return result;
+    }
+
+    /**
+     *Method to return the significant length of each array returned by limbs(), for the LimbInteger methods that take a length.
+     *Theta(1) once limbs() has been built.
+     */
+    public int[] limbLengths(){
+        limbs();
+        return limbLengths;
+    }
+
+    /**
+     *Method to return the number of limbs used by limbs(): enough for the largest element plus 32 bits of headroom for sums.
+     *Theta(1) once limbs() has been built.
+     */
+    public int limbWidth(){
+        long[][] rows = limbs();
+        return rows.length == 0 ? 1 : rows[0].length;
+    }
+
+    /**
+     *Package-private method to estimate the heap size of one BigInteger of bitLength bits: object header and fields plus
+     *its int[] magnitude.
+     */
+    static long estimateBytes(int bitLength){
+        return 40L + 16L + 4L * ((bitLength + 31) / 32);
+    }
+
+    /**
+     *Method to return the number of elements in the vector.
+     *Theta(1), constant time complexity.
+     */
+    public int length(){
+        return ints.length;
+    }
+
+    /**
+     *Method to copy the vector into a new DoublyLinkedList, for callers that still traverse keys through DoubleNodes.
+     *Post-Condition: returns a DoublyLinkedList holding the elements in index order.  Later changes to either are not shared.
+     *Theta(n), linear time complexity.
+     */
+    public DoublyLinkedList toDoublyLinkedList(){
+        DoublyLinkedList list = new DoublyLinkedList();
+        for(int i = 0; i < ints.length; i++){
+            list.addIntAtEnd(ints[i]);
+        }
+        return list;
+    }
+
+    /**
+     *Method to return the BigInteger contents of the vector as a String.
+     *Overrides: toString in class java.lang.Object
+     *Post-Condition: returns a String containing the BigIntegers in index order, separated by spaces.
+     *Theta(n), linear time complexity.
+     */
+    public String toString(){
+        StringBuilder listout = new StringBuilder();
+        for(int i = 0; i < ints.length; i++){
+            listout.append(ints[i]).append(' ');
+        }
+        return listout.toString();
+    }
+}
@@ -0,0 +1,260 @@
+import java.math.BigInteger;
+
+/**
+ * The class LimbInteger is a mutable, fixed-width, unsigned multi-precision integer stored as little-endian 64-bit limbs.
+ * It supports in-place addition, subtraction and comparison against other limb arrays of the same width, so the per-bit
+ * loops of encryption and decryption run without allocating a new BigInteger at every step.
+ * Values are converted to and from BigInteger only at the API boundary.  Arithmetic wraps modulo 2^(64 * width), so callers
+ * choose a width with room for the largest value they will hold.
+ */
+public class LimbInteger {
+
+	/**
+     *Private instance variables for the LimbInteger class.
+	 * long[] limbs - the value, least significant limb first.
+	 * Int used - number of significant limbs; every limb at or above used is zero.
+     */
+    private final long[] limbs;
+    private int used;
+
+    /**
+     *Constructs a new LimbInteger of the given number of limbs with value zero.
+     */
+    LimbInteger(int width){
+        limbs = new long[width];
+    }
+
+    /**
+     *Method to return the number of limbs needed to hold values of up to bits bits.
+     *Theta(1), constant time complexity.
+     */
+    public static int widthFor(int bits){
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    /**
+     *Method to convert a non-negative BigInteger into a new limb array of the given width.
+     *Pre-Condition: value must be non-negative and fit in width limbs.
+     *Theta(n), linear in the width.
+     */
+    public static long[] toLimbs(BigInteger value, int width){
+        long[] result = new long[width];
+        load(value, result);
+        return result;
+    }
+
+    /**
+     *Method to return the number of significant limbs in a limb array: the index of its highest non-zero limb plus one.
+     *Theta(n) worst case, linear in the width.
+     */
+    public static int significantLength(long[] limbs){
+        int length = limbs.length;
+        while(length > 0 && limbs[length - 1] == 0L){
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     *Method to return the number of limbs.
+     */
+    public int width(){
+        return limbs.length;
+    }
+
+    /**
+     *Method to set the value to zero.
+     */
+    public void clear(){
+        for(int i = 0; i < used; i++){
+            limbs[i] = 0L;
+        }
+        used = 0;
+    }
+
+    /**
+     *Method to set the value from a non-negative BigInteger.
+     *Pre-Condition: value must be non-negative and fit in width() limbs.
+     */
+    public void set(BigInteger value){
+        load(value, limbs);
+        used = significantLength(limbs);
+    }
+
+    /**
+     *Package-private method to set the value from length limbs of source starting at offset, least significant first.
+     *Pre-Condition: the value must fit in width() limbs.
+     *Theta(n), linear in the width.  Allocates nothing.
+     */
+    void set(long[] source, int offset, int length){
+        for(int i = limbs.length; i < length; i++){
+            if(source[offset + i] != 0L){
+                throw new ArithmeticException("Value does not fit in " + limbs.length + " unsigned limbs.");
+            }
+        }
+        int copied = Math.min(length, limbs.length);
+        System.arraycopy(source, offset, limbs, 0, copied);
+        for(int i = copied; i < used; i++){
+            limbs[i] = 0L;
+        }
+        used = copied;
+        while(used > 0 && limbs[used - 1] == 0L){
+            used--;
+        }
+    }
+
+    /**
+     *Method to add a limb array of the same width in place.
+     *Theta(n), linear in the width.  Allocates nothing.
+     */
+    public void add(long[] other){
+        add(other, significantLength(other));
+    }
+
+    /**
+     *Method to add the low length limbs of other in place; the limbs of other at or above length must be zero.
+     *Theta(length) plus carry propagation.  Allocates nothing.
+     */
+    public void add(long[] other, int length){
+        long carry = 0L;
+        int i = 0;
+        for(; i < length; i++){
+            long x = limbs[i];
+            long sum = x + other[i];
+            long carryOut = Long.compareUnsigned(sum, x) < 0 ? 1L : 0L;
+            long total = sum + carry;
+            if(Long.compareUnsigned(total, sum) < 0){
+                carryOut = 1L;
+            }
+            limbs[i] = total;
+            carry = carryOut;
+        }
+        for(; carry != 0L && i < limbs.length; i++){
+            limbs[i]++;
+            carry = limbs[i] == 0L ? 1L : 0L;
+        }
+        used = Math.max(used, i);
+        while(used > 0 && limbs[used - 1] == 0L){
+            used--;
+        }
+    }
+
+    /**
+     *Method to add another LimbInteger of the same width in place, such as a partial sum computed on another thread.
+     *Theta(other's significant length) plus carry propagation.  Allocates nothing.
+     */
+    public void add(LimbInteger other){
+        add(other.limbs, other.used);
+    }
+
+    /**
+     *Method to subtract a limb array of the same width in place.
+     *Pre-Condition: other must not be greater than this value.
+     *Theta(n), linear in the width.  Allocates nothing.
+     */
+    public void subtract(long[] other){
+        subtract(other, significantLength(other));
+    }
+
+    /**
+     *Method to subtract the low length limbs of other in place; the limbs of other at or above length must be zero.
+     *Pre-Condition: other must not be greater than this value.
+     *Theta(length) plus borrow propagation.  Allocates nothing.
+     */
+    public void subtract(long[] other, int length){
+        long borrow = 0L;
+        int i = 0;
+        for(; i < length; i++){
+            long x = limbs[i];
+            long diff = x - other[i];
+            long borrowOut = Long.compareUnsigned(x, other[i]) < 0 ? 1L : 0L;
+            long total = diff - borrow;
+            if(Long.compareUnsigned(diff, borrow) < 0){
+                borrowOut = 1L;
+            }
+            limbs[i] = total;
+            borrow = borrowOut;
+        }
+        for(; borrow != 0L && i < limbs.length; i++){
+            borrow = limbs[i] == 0L ? 1L : 0L;
+            limbs[i]--;
+        }
+        while(used > 0 && limbs[used - 1] == 0L){
+            used--;
+        }
+    }
+
+    /**
+     *Method to compare this value with a limb array of the same width.
+     *Post-Condition: returns a negative number, zero or a positive number as this value is less than, equal to or greater than other.
+     *Theta(n) worst case, but stops at the most significant limb that differs.
+     */
+    public int compareTo(long[] other){
+        return compareTo(other, significantLength(other));
+    }
+
+    /**
+     *Method to compare this value with a limb array whose significant length is already known.
+     *Pre-Condition: length must equal significantLength(other).
+     *Post-Condition: returns a negative number, zero or a positive number as this value is less than, equal to or greater than other.
+     *Theta(1) when the significant lengths differ, otherwise stops at the most significant limb that differs.
+     */
+    public int compareTo(long[] other, int length){
+        if(used != length){
+            return used < length ? -1 : 1;
+        }
+        for(int i = used - 1; i >= 0; i--){
+            if(limbs[i] != other[i]){
+                return Long.compareUnsigned(limbs[i], other[i]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     *Method to convert the value to a new non-negative BigInteger.
+     *Theta(n), linear in the significant length.
+     */
+    public BigInteger toBigInteger(){
+        return toBigInteger(new byte[8 * used]);
+    }
+
+    /**
+     *Method to convert the value to a new non-negative BigInteger, using scratch for the intermediate big-endian bytes.
+     *Pre-Condition: scratch holds at least 8 * width() bytes.
+     *Post-Condition: the returned BigInteger is the only allocation.
+     *Theta(n), linear in the significant length.
+     */
+    public BigInteger toBigInteger(byte[] scratch){
+        int length = 8 * used;
+        for(int i = 0; i < used; i++){
+            long limb = limbs[i];
+            int base = length - 8 * (i + 1);
+            for(int j = 7; j >= 0; j--){
+                scratch[base + j] = (byte) limb;
+                limb >>>= 8;
+            }
+        }
+        return new BigInteger(1, scratch, 0, length);
+    }
+
+    /**
+     *Private method to write a non-negative BigInteger into limbs, least significant limb first.
+     */
+    private static void load(BigInteger value, long[] limbs){
+        if(value.signum() < 0 || value.bitLength() > 64 * limbs.length){
+            throw new ArithmeticException("Value does not fit in " + limbs.length + " unsigned limbs.");
+        }
+        byte[] bytes = value.toByteArray();
+        for(int i = 0; i < limbs.length; i++){
+            long limb = 0L;
+            for(int j = 0; j < 8; j++){
+                int index = bytes.length - 1 - (8 * i + j);
+                if(index >= 0){
+                    limb |= (bytes[index] & 0xFFL) << (8 * j);
+                }
+            }
+            limbs[i] = limb;
+        }
+    }
+}
@@ -1,19 +1,46 @@
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
 
 /**
  * Main class to initialize a new MerkleHellman object and encrypt and decrypt user-inputted strings using
- * the Merkle-Hellman encryption protocol.  This method utilizes Doubly-Linked Lists and thus requires access
- * to DoublyLinkedList and DoubleNode Java classes.  The encryption key is generated one time, and the user
+ * the Merkle-Hellman encryption protocol.  This method utilizes indexed key vectors and thus requires access
+ * to the KeyVector, DoublyLinkedList and DoubleNode Java classes.  The encryption key is generated one time, and the user
  * is allowed to input multiple strings for encryption.  Will only encrypt for input strings up to 80 characters long.
+ * When run with arguments, Main instead offers keygen, encrypt and decrypt subcommands for files and pipes, which
+ * store keys with KeyFile and encrypt input of any length with BlockStream, and a serve subcommand that runs an EncryptionServer.
  */
 public class Main {
 
 	/**
-	 * Main method of program to initilize new Merkle-Hellman object and receive strings from user.
-	 * Prompts user for Y/N response to continue inputting strings or to terminate program.
+	 * Main method of program.  With no arguments, runs the interactive session below.
+	 * With arguments, runs one batch subcommand; see USAGE.
 	 */
     public static void main(String[] args) {
+    	if(args.length > 0){
+    		System.exit(runCommand(args));
+    	}
+    	interactive();
+    }
+
+	/**
+	 * Method to initilize new Merkle-Hellman object and receive strings from user.
+	 * Prompts user for Y/N response to continue inputting strings or to terminate program.
+	 */
+    private static void interactive() {
     	Scanner scanner = new Scanner(System.in);
     	boolean playagain = true;
 
@@ -56,5 +83,140 @@ public class Main {
         	}
         };
     }
+
+	/**
+	 * Usage text for the batch subcommands.  A missing --in or --out, or the value "-", means stdin or stdout.
+	 * Ciphertext uses the BlockStream record format, or with --format batch the CiphertextCodec batch container
+	 * labelled with the key file's name.
+	 */
+    static final String USAGE =
+    		"Usage: java Main                       (interactive)\n" +
+    		"       java Main keygen  <keyfile> [--length N] [--min M] [--max M]\n" +
+    		"       java Main encrypt <keyfile> [--in FILE] [--out FILE] [--threads N] [--format records|batch]\n" +
+    		"       java Main decrypt <keyfile> [--in FILE] [--out FILE] [--threads N] [--format records|batch]\n" +
+    		"       java Main serve   <keyfile> [--listen PORT|SOCKET] [--threads N] [--batch N]";
+
+	/**
+	 * Method to run one batch subcommand.
+	 * Post-Condition: returns 0 on success, 1 on an I/O or key error, and 2 on invalid arguments.
+	 */
+    static int runCommand(String[] args) {
+    	if(args.length < 2){
+    		System.err.println(USAGE);
+    		return 2;
+    	}
+    	Map<String, String> options = new HashMap<>();
+    	for(int i = 2; i < args.length; i += 2){
+    		if(!args[i].startsWith("--") || i + 1 >= args.length){
+    			System.err.println(USAGE);
+    			return 2;
+    		}
+    		options.put(args[i].substring(2), args[i + 1]);
+    	}
+    	Path keyPath = Paths.get(args[1]);
+
+    	try {
+    		switch(args[0]){
+    		case "keygen":
+    			MerkleHellman newMK = new MerkleHellman(Integer.parseInt(options.getOrDefault("min", "1")),
+    					Integer.parseInt(options.getOrDefault("max", "5")),
+    					Integer.parseInt(options.getOrDefault("length", "640")), new SecureRandom());
+    			newMK.createw();
+    			newMK.createb();
+    			KeyFile.save(newMK.toKey(), keyPath);
+    			return 0;
+    		case "encrypt":
+    		case "decrypt":
+    			MerkleHellmanKey key = KeyFile.load(keyPath);
+    			int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+    			String format = options.getOrDefault("format", "records");
+    			if(!format.equals("records") && !format.equals("batch")){
+    				System.err.println(USAGE);
+    				return 2;
+    			}
+    			try(ReadableByteChannel in = openInput(options.get("in"));
+    					WritableByteChannel out = openOutput(options.get("out"))){
+    				InputStream source = Channels.newInputStream(in);
+    				OutputStream sink = Channels.newOutputStream(out);
+    				String keyId = keyPath.getFileName().toString();
+    				if(format.equals("batch")){
+    					ForkJoinPool pool = threads <= 1 ? null : new ForkJoinPool(threads);
+    					try {
+    						if(args[0].equals("encrypt")){
+    							BlockStream.encryptBatch(key, keyId, source, sink, pool);
+    						} else {
+    							BlockStream.decryptBatch(key, keyId, source, sink, pool);
+    						}
+    					} finally {
+    						if(pool != null){
+    							pool.shutdown();
+    						}
+    					}
+    				} else if(threads <= 1 && args[0].equals("encrypt")){
+    					BlockStream.encrypt(key, source, sink);
+    				} else if(threads <= 1){
+    					BlockStream.decrypt(key, source, sink);
+    				} else {
+    					ForkJoinPool pool = new ForkJoinPool(threads);
+    					try {
+    						if(args[0].equals("encrypt")){
+    							BlockStream.encrypt(key, source, sink, pool);
+    						} else {
+    							BlockStream.decrypt(key, source, sink, pool);
+    						}
+    					} finally {
+    						pool.shutdown();
+    					}
+    				}
+    			}
+    			return 0;
+    		case "serve":
+    			KeyRing ring = new KeyRing(64L << 20, 16, 8);
+    			ring.addKey(keyPath.getFileName().toString(), KeyFile.load(keyPath));
+    			ForkJoinPool workers = new ForkJoinPool(Integer.parseInt(options.getOrDefault("threads",
+    					String.valueOf(Runtime.getRuntime().availableProcessors()))));
+    			try(EncryptionServer server = new EncryptionServer(ring,
+    					EncryptionServer.parseAddress(options.getOrDefault("listen", "7070")), workers,
+    					Integer.parseInt(options.getOrDefault("batch", "64")))){
+    				System.err.println("Serving key " + keyPath.getFileName() + " on " + server.returnAddress());
+    				server.run();
+    			} finally {
+    				workers.shutdown();
+    			}
+    			return 0;
+    		default:
+    			System.err.println(USAGE);
+    			return 2;
+    		}
+    	} catch(NumberFormatException e){
+    		System.err.println("Invalid number: " + e.getMessage());
+    		System.err.println(USAGE);
+    		return 2;
+    	} catch(IOException | RuntimeException e){
+    		System.err.println(args[0] + " failed: " + e.getMessage());
+    		return 1;
+    	}
+    }
+
+	/**
+	 * Method to open a file for reading, or stdin when name is null or "-".
+	 */
+    private static ReadableByteChannel openInput(String name) throws IOException {
+    	if(name == null || name.equals("-")){
+    		return Channels.newChannel(System.in);
+    	}
+    	return FileChannel.open(Paths.get(name), StandardOpenOption.READ);
+    }
+
+	/**
+	 * Method to open a file for writing, replacing its contents, or stdout when name is null or "-".
+	 */
+    private static WritableByteChannel openOutput(String name) throws IOException {
+    	if(name == null || name.equals("-")){
+    		return Channels.newChannel(System.out);
+    	}
+    	return FileChannel.open(Paths.get(name), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+    			StandardOpenOption.TRUNCATE_EXISTING);
+    }
 	
 }
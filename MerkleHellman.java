@@ -1,9 +1,15 @@
 import java.math.BigInteger;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
 
 /**
  * The class MerkleHellman implements a new instance of a Merkle-Hellman object to be used for Merkle-Hellman encryption.
- * This class relies on DoublyLinkedList objects populated with DoubleNodes of type BigInteger for encryption and decryption keys.
+ * This class stores the encryption and decryption keys in KeyVector objects, indexed arrays of BigIntegers.
+ * The keys are still available as DoublyLinkedList objects through returnw() and returnb().
  * The class contains public methods to populate the private key, w, and the public key, b.
  * The class also contains a method to encrypt an input string, encstring, and to decrypt the string.
  * For more information, please refer to https://en.wikipedia.org/wiki/Merkle%E2%80%93Hellman_knapsack_cryptosystem.
@@ -13,19 +19,21 @@ public class MerkleHellman {
 	/**
      *Private instance variables for the Merkle-Hellman class.
 	 * encstring - input string to be encrypted.
-	 * DoublyLinkedList w - private key.
-	 * DoublyLinkedList b - public key.
+	 * KeyVector w - private key.
+	 * KeyVector b - public key.
 	 * MaxSeed, MinSeed - integer variables to help populate the superincreasing sequence using random numbers.
 	 * BigInteger wSum - sum of w values.
 	 * BigInteger q - random number greater than wSum.
-	 * BigInteger r - random number coprime to q.  Default value will be q-1, which will always be coprime to q.
+	 * BigInteger r - random number coprime to q, drawn uniformly from [2, q-1] by genRandomCoprime.
 	 * BigInteger encryptSum - the BigInteger result of the Merkle-Hellman encryption algorithm.
-	 * Int vectorlength - used to control the number of DoubleNode objects needed (default 640).
+	 * Int vectorlength - used to control the number of key elements in w and b (default 640).
 	 * String decryptString - result of decryption algorithm.
+	 * DecryptionContext decryptContext - cached r inverse and reduction setup for q, built on first decryption after createw.
+	 * RandomGenerator rng - source of randomness for key generation (default SplittableRandom).
      */
 	private String encstring;
-	private DoublyLinkedList w;
-	private DoublyLinkedList b;
+	private KeyVector w;
+	private KeyVector b;
 	private int MinSeed;
 	private int MaxSeed;
 	private BigInteger wSum;
@@ -34,37 +42,69 @@ public class MerkleHellman {
 	private BigInteger encryptSum;
 	private int vectorlength;
 	private String decryptString;
+	private DecryptionContext decryptContext;
+	private RandomGenerator rng;
+	
+	/**
+	 *Vector length at or above which createb computes the elements of b in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1024;
+	
+	/**
+	 *Number of consecutive elements of b that createb derives from one full multiply-mod.
+	 */
+	private static final int CHUNK_SIZE = 256;
 	
 	/**
     *Default constructor for MerkleHellman object.
 	 * encstring and decryptString set to null values.
-	 * w and b initilized as new DoublyLinkedList objects.
+	 * w and b initilized as new, empty KeyVector objects.
 	 * Default values for MinSeed, MaxSeed, and vectorlength.
     */
    MerkleHellman(){
        encstring = "";
        decryptString = "";
-	   w = new DoublyLinkedList();
-	   b = new DoublyLinkedList();
+	   w = new KeyVector(0);
+	   b = new KeyVector(0);
 	   MinSeed = 1;
        MaxSeed = 5;
        vectorlength = 640;
+       rng = new SplittableRandom();
    }
    
    /**
 	*Secondary constructor for MerkleHellman object with int inputs.
 	* encstring and decryptString set to null values.
-	* w and be initilized as new DoublyLinkedList objects.
+	* w and be initilized as new, empty KeyVector objects.
 	* Default value for vectorlength.  MinSeed and MaxSeed provided in constructor argument.
 	*/
    MerkleHellman(int Min, int Max){
 	   encstring = "";
 	   decryptString = "";
-	   w = new DoublyLinkedList();
-	   b = new DoublyLinkedList();
+	   w = new KeyVector(0);
+	   b = new KeyVector(0);
 	   MinSeed = Min;
        MaxSeed = Max;
        vectorlength = 640;
+       rng = new SplittableRandom();
+   }
+   
+   /**
+	*Tertiary constructor for MerkleHellman object with key size and random source.
+	* encstring and decryptString set to null values.
+	* w and be initilized as new, empty KeyVector objects.
+	* MinSeed, MaxSeed, vectorlength and the RandomGenerator provided in constructor argument.
+	* Use a SecureRandom for keys that will protect real data; SplittableRandom is faster but not cryptographically strong.
+	*/
+   MerkleHellman(int Min, int Max, int length, RandomGenerator random){
+	   encstring = "";
+	   decryptString = "";
+	   w = new KeyVector(0);
+	   b = new KeyVector(0);
+	   MinSeed = Min;
+       MaxSeed = Max;
+       vectorlength = length;
+       rng = random;
    }
    
    /**
@@ -73,48 +113,65 @@ public class MerkleHellman {
 	* Will also calculate wSum, q, and r values based on private key.
 	* Pre-Condition: vectorlength must be initialized to positive integer value.  Default = 640 for 80-character input.
 	* MinSeed and MaxSeed must also be initialized to positive integer values.
-	* Requires use of genCoprime method, which will only work for q greater than 2.
-	* Post-Condition: new w DoublyLinkedList object and wSum, q, and r values initilized for Merkle-Hellman object.
+	* Requires use of genRandomCoprime method, which will only work for q greater than 2.
+	* Post-Condition: new w KeyVector object and wSum, q, and r values initilized for Merkle-Hellman object.
 	* Theta(n), linear time complexity.
     */
    public void createw(){
+	   long started = CipherMetrics.start();
 	   int incr = 0;
 	   BigInteger sumbef = BigInteger.valueOf(0);
        BigInteger sumaft = BigInteger.valueOf(0);
+       w = new KeyVector(vectorlength);
               
-       for(int i = 1; i < (vectorlength + 1); i++){
+       for(int i = 0; i < vectorlength; i++){
 		   sumbef = sumaft;
     	   incr = returnRandInt(MinSeed, MaxSeed);
 		   sumbef = sumbef.add(BigInteger.valueOf(incr));
-		   w.addIntAtEnd(sumbef);
+		   w.set(i, sumbef);
 		   sumaft = sumaft.add(sumbef);
        }
        
        wSum = sumaft;
        incr = returnRandInt(MinSeed, MaxSeed);
        q = wSum.add(BigInteger.valueOf(incr));
-       r = genCoprime(q);
+       r = genRandomCoprime(q, rng);
+       decryptContext = null;
+       CipherMetrics.record(CipherMetrics.Operation.CREATE_W, started, 0, q.bitLength());
    }
 	
    /**
 	*Public method to create the public key, b, for the Merkle-Hellman encryption algorithm.
-	* Pre-Condition: Presumes a valid, null-terminating w DoublyLinkedList object has been initialized.
-	* Post-Condition: Updates b DoublyLinkedList object based on required values for algorithm.
+	* Pre-Condition: Presumes a valid w KeyVector object has been initialized by createw.
+	* Post-Condition: Replaces b KeyVector object based on required values for algorithm.
+	* w is split into chunks of CHUNK_SIZE elements.  The first element of each chunk is computed as w * r mod q, and the rest
+	* follow from b[i] = (2 * b[i-1] + (w[i] - 2 * w[i-1]) * r) mod q.  For keys from createw, w[i] - 2 * w[i-1] is a small
+	* difference of two increments, so each step costs a short multiplication and a reduction with a one-word quotient
+	* instead of a full multiply and division.
+	* Chunks are independent, so from PARALLEL_THRESHOLD elements up they are computed on the common ForkJoinPool.
 	* Theta(n), linear time complexity.
     */
    public void createb(){
-	   DoubleNode pointer = new DoubleNode();
-	   pointer = w.getHead();
-	   BigInteger bval = BigInteger.valueOf(0);
-	   	   
-       for(int i = 1; i < (vectorlength + 1); i++){
-    	   bval = pointer.getInt();
-    	   bval = bval.multiply(r);
-    	   bval = bval.mod(q);
-		   b.addIntAtEnd(bval);
-		   pointer = pointer.getNext();
-       }
-       
+	   long started = CipherMetrics.start();
+	   KeyVector newb = new KeyVector(vectorlength);
+	   int chunks = (vectorlength + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	   IntStream indices = IntStream.range(0, chunks);
+	   if(vectorlength >= PARALLEL_THRESHOLD){
+		   indices = indices.parallel();
+	   }
+	   indices.forEach(c -> {
+		   int start = c * CHUNK_SIZE;
+		   int end = Math.min(start + CHUNK_SIZE, vectorlength);
+		   BigInteger bval = w.get(start).multiply(r).mod(q);
+		   newb.set(start, bval);
+		   for(int i = start + 1; i < end; i++){
+			   BigInteger diff = w.get(i).subtract(w.get(i - 1).shiftLeft(1));
+			   bval = bval.shiftLeft(1).add(diff.multiply(r)).mod(q);
+			   newb.set(i, bval);
+		   }
+	   });
+	   b = newb;
+	   CipherMetrics.record(CipherMetrics.Operation.CREATE_B, started, 0, q.bitLength());
    }
    
    /**
@@ -124,11 +181,40 @@ public class MerkleHellman {
 	* Theta(1), constant time complexity.
     */
    public int returnRandInt(int Min, int Max){
-       int randInt = Min + (int)(Math.random() * ((Max - Min) + 1));
+       int randInt = Min + rng.nextInt((Max - Min) + 1);
 	   return randInt;
    }
    
 
+   /**
+    *Public static method to draw a random value coprime to a BigInteger argument from a given source of randomness.
+	* Draws candidates uniformly from [2, limit - 1] and keeps the first with a GCD of 1 with limit.  Most candidates qualify,
+	* so only a few GCDs are needed.  Falls back to genCoprime if no candidate is found after 64 draws.
+	* Pre-Condition: requires valid BigInteger argument with value greater than 2.
+	* Post-Condition: returns BigInteger coprime to argument, or throws ArithmeticException, as genCoprime does, if limit is 2 or less.
+	* Expected Theta(1) GCD computations.
+    */
+   public static BigInteger genRandomCoprime(BigInteger limit, RandomGenerator random){
+	   if(limit.compareTo(BigInteger.valueOf(2)) <= 0){
+		   throw new ArithmeticException("Algorithm failed to converge.  Could not find valid coprime.");
+	   }
+	   BigInteger span = limit.subtract(BigInteger.valueOf(2));
+	   int bits = span.bitLength();
+	   byte[] bytes = new byte[(bits + 7) / 8];
+	   for(int tries = 0; tries < 64; tries++){
+		   random.nextBytes(bytes);
+		   bytes[0] &= (byte) (0xFF >>> (8 * bytes.length - bits));
+		   BigInteger candidate = new BigInteger(1, bytes);
+		   if(candidate.compareTo(span) < 0){
+			   candidate = candidate.add(BigInteger.valueOf(2));
+			   if(limit.gcd(candidate).equals(BigInteger.valueOf(1))){
+				   return candidate;
+			   }
+		   }
+	   }
+	   return genCoprime(limit);
+   }
+   
    /**
     *Public method to generate a coprime value for a BigInteger argument.
 	* An integer is coprime to another integer if and only if their Greatest Common Divisor is 1.
@@ -139,7 +225,7 @@ public class MerkleHellman {
 	* Best Case: Theta(1), or constant time complexity.  Should resolve to limit - 1.
 	* Worst Case: Theta(N), or linear time complexity.  Should only be worst case for input equal to 3.
     */
-   public BigInteger genCoprime(BigInteger limit){
+   public static BigInteger genCoprime(BigInteger limit){
 	   BigInteger randInt = limit.subtract(BigInteger.valueOf(1));
 	   while(randInt.compareTo(BigInteger.valueOf(1)) == 1){
 		   if((limit.gcd(randInt).equals(BigInteger.valueOf(1)))){
@@ -155,126 +241,222 @@ public class MerkleHellman {
    
    /**
     *Public method to encrypt an inputted string using Merkle-Hellman algorithm and public key (b).
-	* Converts each character to a binary string object and adds back leading 0 values as appropriate.
-	* Then utilizes an increasing BigInteger, sumencryptInt, to track the increasing value of the product of b and the bitwise value.
-	* Pre-Condition: requires valid, null-terminating b DoublyLinkedList to be initilized.
+	* Reads the bits of each character directly with shifts and masks, most significant bit first.  Each character contributes
+	* 8 bits, or as many bits as its binary representation needs if that is more than 8, so characters above 255 shift every
+	* later bit.  Use MerkleHellmanKey.encryptUtf8 or encrypt(ByteBuffer) for text that is not ISO-8859-1.
+	* Only the elements of b whose matching bit is set are added to the sum; bits past the end of b are all weighted by the last element of b.
+	* Pre-Condition: requires valid b KeyVector to be initilized.
 	* Post-Condition: updates BigInteger encryptSum value based on algorithm.
-	* Theta(N), or linear time complexity.  Requires ~2N calculations to convert characters to binary values and ~8N calculations to
-	* sum binary values according to algorithm.
+	* The sum is kept in the thread's CipherWorkspace accumulator, so the call allocates only the resulting BigInteger.
+	* Theta(N), or linear time complexity.  Requires ~8N bit tests and one limb addition per set bit.
     */
    public void encryptString(String inputStr1){
+	   long started = CipherMetrics.start();
 	   encstring = inputStr1;
-	   BigInteger sumencryptInt = BigInteger.valueOf(0);
-	   BigInteger productInt = BigInteger.valueOf(0);
-	   BigInteger encryptInt = BigInteger.valueOf(0);
-	   String binresult = "";
-	   String charresult = "";
-	   char[] CharArray = encstring.toCharArray();
-	   DoubleNode pointer = new DoubleNode();
-	   pointer = b.getHead();
-	   char bit;
+	   long[][] rows = b.limbs();
+	   int[] lengths = b.limbLengths();
+	   CipherWorkspace workspace = CipherWorkspace.forThread();
+	   LimbInteger sumencryptInt = workspace.accumulator(b.limbWidth());
+	   int last = b.length() - 1;
+	   int index = 0;
 	   
-	   for(int j = 0; j < (encstring.length()); j++){
-		   charresult = Integer.toBinaryString(CharArray[j]) + "";
-	   	   
-		   if(charresult.length() == 7) {
-			   charresult = "0" + charresult;
-		   }
-		   if(charresult.length() == 6) {
-			   charresult = "00" + charresult;
-		   }
-		   if(charresult.length() == 5) {
-			   charresult = "000" + charresult;
-		   }
-		   if(charresult.length() == 4) {
-			   charresult = "0000" + charresult;
-		   }
-		   if(charresult.length() == 3) {
-			   charresult = "00000" + charresult;
-		   }
-		   if(charresult.length() == 2) {
-			   charresult = "000000" + charresult;
-		   }
-		   if(charresult.length() == 1) {
-			   charresult = "0000000" + charresult;
-		   }
+	   for(int j = 0; j < encstring.length(); j++){
+		   char c = encstring.charAt(j);
+		   int width = Math.max(8, 32 - Integer.numberOfLeadingZeros(c));
 		   
-		   binresult = binresult + charresult;
+		   for(int shift = width - 1; shift >= 0; shift--){
+			   if(((c >>> shift) & 1) != 0){
+				   sumencryptInt.add(rows[index], lengths[index]);
+			   }
+			   if(index < last){
+				   index++;
+			   }
+		   }
 	   }
 	   
-	   for(int k = 0; k < (binresult.length()); k++){
-		   bit = binresult.charAt(k);
-		   encryptInt = pointer.getInt();
-		   
-		   if(bit == '0'){
-			   productInt = encryptInt.multiply(BigInteger.valueOf(0));
-		   } else {
-			   productInt = encryptInt.multiply(BigInteger.valueOf(1));
-		   }
+	   encryptSum = sumencryptInt.toBigInteger(workspace.bytes(8 * b.limbWidth()));
+	   CipherMetrics.record(CipherMetrics.Operation.ENCRYPT, started, encstring.length(), encryptSum.bitLength());
+   }
+   
+   /**
+    *Public method to encrypt an array of bytes using Merkle-Hellman algorithm and public key (b).
+	* Each byte contributes exactly 8 bits, most significant bit first, so for characters up to 255 the result matches encryptString.
+	* Unlike encryptString, input longer than the block is rejected instead of being summed with the last element of b,
+	* which could not be decrypted.
+	* Pre-Condition: requires valid b KeyVector to be initilized and a non-null byte array of at most vectorlength / 8 bytes.
+	* Post-Condition: updates BigInteger encryptSum value based on algorithm.  Throws IllegalArgumentException for longer input.
+	* Theta(N), or linear time complexity.  Requires 8N bit tests and one limb addition per set bit.
+    */
+   public void encryptBytes(byte[] input){
+	   MerkleHellmanKey.checkLength(input.length, b.length() / 8);
+	   long started = CipherMetrics.start();
+	   long[][] rows = b.limbs();
+	   int[] lengths = b.limbLengths();
+	   CipherWorkspace workspace = CipherWorkspace.forThread();
+	   LimbInteger sumencryptInt = workspace.accumulator(b.limbWidth());
+	   int index = 0;
+	   
+	   for(int j = 0; j < input.length; j++){
+		   int bits = input[j] & 0xFF;
 		   
-		   sumencryptInt = sumencryptInt.add(productInt);
-		   if(pointer.getNext() != null){
-			   pointer = pointer.getNext();
+		   for(int shift = 7; shift >= 0; shift--){
+			   if(((bits >>> shift) & 1) != 0){
+				   sumencryptInt.add(rows[index], lengths[index]);
+			   }
+			   index++;
 		   }
 	   }
 	   
-	   encryptSum =  sumencryptInt;
+	   encryptSum = sumencryptInt.toBigInteger(workspace.bytes(8 * b.limbWidth()));
+	   CipherMetrics.record(CipherMetrics.Operation.ENCRYPT, started, input.length, encryptSum.bitLength());
    }
    
    /**
 	*Public method to decrypt the stored string using Merkle-Hellman algorithm, the encryptSum BigInteger, and the private key, w.
-	* Utilizes encryptSum to compare against w values and create binary sequence which is converted into ASCII to form decrypted message.
-	* Pre-Condition: requires valid, null-terminating w.
+	* Decrypts into bytes with decryptBytes and maps each byte to the character with the same value, 0 to 255.
+	* Pre-Condition: requires valid w KeyVector to be initilized.
 	* Post-Condition: decryptString updated for ASCII character sequence as a result of algorithm.
-	* Theta(N), or linear time complexity.  Requires ~2N calculations to generate binary string and ~24N calculations to sum binary
-	* values and convert to ASCII.
+	* Theta(N), or linear time complexity.
 	*/
    public void decryptString(){
-	   BigInteger decval = BigInteger.valueOf(0);
-	   BigInteger wval = BigInteger.valueOf(0);
-	   String decmess = "";
-	   String message = "";
-	   DoubleNode pointer = new DoubleNode();
-	   pointer = w.getTail();
-	   int power2 = 7;
-	   int cumsum = 0;
-	   char c;
-	   
-	   BigInteger rinv = r.modInverse(q);
-	   decval = rinv.multiply(encryptSum);
-	   decval = decval.mod(q);
+	   decryptString = new String(decryptBytes(), StandardCharsets.ISO_8859_1);
+   }
+   
+   /**
+	*Public method to decrypt the stored encryptSum into a new byte array.
+	* Post-Condition: returns a byte array of length vectorlength / 8 holding the decrypted message.
+	* Theta(N), or linear time complexity.
+	*/
+   public byte[] decryptBytes(){
+	   byte[] message = new byte[w.length() / 8];
+	   decryptBytes(message, 0);
+	   return message;
+   }
+   
+   /**
+	*Public method to decrypt the stored encryptSum into a caller-supplied buffer using Merkle-Hellman algorithm and the private key, w.
+	* Walks w from the largest element back to the smallest, subtracting each element that fits and setting the matching bit
+	* of the output, most significant bit first within each byte.  Trailing bits that do not fill a whole byte are dropped.
+	* Pre-Condition: requires valid w KeyVector to be initilized and room for vectorlength / 8 bytes in dst starting at offset.
+	* Post-Condition: writes the decrypted message into dst and returns the number of bytes written.
+	* Theta(N) worst case.  Requires one limb comparison per element of w below the highest set bit and one subtraction per set bit.
+	*/
+   public int decryptBytes(byte[] dst, int offset){
+	   int length = w.length() / 8;
+	   if(offset < 0 || offset > dst.length - length){
+		   throw new IndexOutOfBoundsException("Buffer too small for " + length + " decrypted bytes.");
+	   }
+	   long started = CipherMetrics.start();
+	   LimbInteger remainder = CipherWorkspace.forThread().remainder(w.limbWidth());
+	   remainder.set(returnDecryptionContext().recover(encryptSum));
+	   greedyDecrypt(w, remainder, dst, offset, length);
+	   CipherMetrics.record(CipherMetrics.Operation.DECRYPT, started, length, encryptSum.bitLength());
+	   return length;
+   }
+   
+   /**
+	*Package-private method that runs the greedy walk over a superincreasing w, shared by MerkleHellman and MerkleHellmanKey.
+	* Walks w from the largest element back to the smallest, subtracting each element that fits and setting the matching bit
+	* of dst, most significant bit first within each byte.  Bits at or past 8 * length are subtracted but not written.
+	* The walk starts at the highest set bit, found by topIndex, so a short message costs time in proportion to its own length
+	* rather than the key's.  The walk subtracts in place from remainder, a CipherWorkspace register, and allocates nothing.
+	* Pre-Condition: remainder holds the recovered knapsack sum, as returned or set by DecryptionContext.recover, and dst has room for
+	* length bytes starting at offset.
+	* Post-Condition: dst[offset, offset + length) holds the decrypted message.  remainder is consumed.
+	* Theta(log N + T) for T the index of the highest set bit.
+	*/
+   static void greedyDecrypt(KeyVector w, LimbInteger remainder, byte[] dst, int offset, int length){
+	   long[][] rows = w.limbs();
+	   int[] lengths = w.limbLengths();
 	   
-	   while(pointer != null){
-		   wval = pointer.getInt();
-		   
-		   if(wval.compareTo(decval) < 1){
-			   decval = decval.subtract(wval);
-			   decmess = "1" + decmess;
-		   } else {
-			   decmess = "0" + decmess;
+	   Arrays.fill(dst, offset, offset + length, (byte) 0);
+	   for(int i = topIndex(remainder, rows, lengths); i >= 0; i--){
+		   if(remainder.compareTo(rows[i], lengths[i]) >= 0){
+			   remainder.subtract(rows[i], lengths[i]);
+			   if(i < 8 * length){
+				   dst[offset + (i >>> 3)] |= (byte) (0x80 >>> (i & 7));
+			   }
 		   }
-		   
-		   pointer = pointer.getPrev();
 	   }
+   }
+   
+   /**
+    *Package-private variant of greedyDecrypt that writes into a heap or direct ByteBuffer with absolute puts.
+	* Like the byte array version it starts at topIndex.  Each decrypted byte is assembled in a register and written once,
+	* so dst needs no clearing first.
+	* Pre-Condition: dst has room for length bytes starting at index offset.
+	* Post-Condition: writes the decrypted block at offset; the buffer's position is unchanged.
+    */
+   static void greedyDecrypt(KeyVector w, LimbInteger remainder, ByteBuffer dst, int offset, int length){
+	   long[][] rows = w.limbs();
+	   int[] lengths = w.limbLengths();
 	   
-	   for(int l = 0; l < decmess.length(); l++){
-		   
-		   if(decmess.charAt(l) == '1'){
-			   cumsum += Math.pow(2, power2);
-			   power2 -= 1;
-		   } else {
-			   power2 -= 1;
+	   int top = topIndex(remainder, rows, lengths);
+	   for(int i = top; i >= 8 * length; i--){
+		   if(remainder.compareTo(rows[i], lengths[i]) >= 0){
+			   remainder.subtract(rows[i], lengths[i]);
 		   }
-
-		   if(((l+1) % 8 == 0) && (l > 0)){
-			   power2 = 7;
-			   c = (char) cumsum;
-			   message = message + c;
-			   cumsum = 0;
+	   }
+	   int j = length - 1;
+	   for(; j > top >> 3; j--){
+		   dst.put(offset + j, (byte) 0);
+	   }
+	   for(; j >= 0; j--){
+		   int value = 0;
+		   for(int bit = 7; bit >= 0; bit--){
+			   int i = 8 * j + bit;
+			   if(remainder.compareTo(rows[i], lengths[i]) >= 0){
+				   remainder.subtract(rows[i], lengths[i]);
+				   value |= 0x80 >>> bit;
+			   }
 		   }
-	   }   
-  
-	   decryptString = message;
+		   dst.put(offset + j, (byte) value);
+	   }
+   }
+   
+   /**
+    *Private method to find where the greedy walk starts: the largest index i with w[i] no greater than the remainder, or -1 if there is none.
+	* Because w is superincreasing, every element above that index exceeds the remainder and would be skipped by the walk,
+	* so this is the highest set bit of the message.  Found by binary search over the sorted elements of w.
+	* Theta(log N) limb comparisons, each Theta(1) unless the significant lengths are equal.
+    */
+   private static int topIndex(LimbInteger remainder, long[][] rows, int[] lengths){
+	   int low = 0;
+	   int high = rows.length - 1;
+	   int top = -1;
+	   while(low <= high){
+		   int mid = (low + high) >>> 1;
+		   if(remainder.compareTo(rows[mid], lengths[mid]) >= 0){
+			   top = mid;
+			   low = mid + 1;
+		   } else {
+			   high = mid - 1;
+		   }
+	   }
+	   return top;
+   }
+   
+   /**
+    *Public method to return an immutable, thread-safe snapshot of the current key.
+	* Pre-Condition: requires createw and createb to have been called.
+	* Post-Condition: returns a new MerkleHellmanKey holding copies of w, b, q and r.  Later calls to createw or createb do not affect it.
+	* Theta(N), linear time complexity.
+    */
+   public MerkleHellmanKey toKey(){
+	   return new MerkleHellmanKey(w, b, q, r);
+   }
+   
+   /**
+    *Public method to return the DecryptionContext for the current key, building it on first use.
+	* Pre-Condition: requires q and r to be initialized by createw.
+	* Post-Condition: returns the cached DecryptionContext; it is rebuilt only after createw generates a new key.
+	* Theta(1) after the first call.
+    */
+   public DecryptionContext returnDecryptionContext(){
+	   if(decryptContext == null){
+		   decryptContext = new DecryptionContext(q, r);
+	   }
+	   return decryptContext;
    }
    
    /**
@@ -287,20 +469,38 @@ public class MerkleHellman {
    }
    
    /**
-    *Public method to return a pointer to the w DoublyLinkedList object.
+    *Public method to return the private key, w, as a DoublyLinkedList object.
+	* Post-Condition: returns a new DoublyLinkedList copied from the w instance variable.
+	* Theta(n), linear time complexity.
+    */
+   public DoublyLinkedList returnw(){
+       return w.toDoublyLinkedList();
+   }
+   
+   /**
+    *Public method to return the public key, b, as a DoublyLinkedList object.
+	* Post-Condition: returns a new DoublyLinkedList copied from the b instance variable.
+	* Theta(n), linear time complexity.
+    */
+   public DoublyLinkedList returnb(){
+       return b.toDoublyLinkedList();
+   }
+   
+   /**
+    *Public method to return a pointer to the w KeyVector object.
 	* Post-Condition: returns pointer to w instance variable.
 	* Theta(1), constant time complexity.
     */
-   public DoublyLinkedList returnw(){
+   public KeyVector returnwVector(){
        return w;
    }
    
    /**
-    *Public method to return a pointer to the b DoublyLinkedList object.
+    *Public method to return a pointer to the b KeyVector object.
 	* Post-Condition: returns pointer to b instance variable.
 	* Theta(1), constant time complexity.
     */
-   public DoublyLinkedList returnb(){
+   public KeyVector returnbVector(){
        return b;
    }
    
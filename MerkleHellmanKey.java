@@ -0,0 +1,381 @@
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The class MerkleHellmanKey is an immutable snapshot of a Merkle-Hellman key pair, created with MerkleHellman.toKey().
+ * Unlike MerkleHellman, it keeps no per-message state, so a single instance can be shared by any number of threads.
+ * Its encrypt and decrypt methods work on bytes, either arrays or heap and direct ByteBuffers read and written in place,
+ * with encryptUtf8 and decryptUtf8 layered on top for text.  The batch methods spread independent messages across a
+ * ForkJoinPool while keeping results in input order.
+ */
+public class MerkleHellmanKey {
+
+	/**
+     *Private instance variables for the MerkleHellmanKey class.
+	 * KeyVector w - private key.  Never modified after construction.
+	 * KeyVector b - public key.  Never modified after construction.
+	 * BigInteger q, r - modulus and multiplier of the key.
+	 * DecryptionContext context - cached r inverse and reduction setup for q, built on first decryption so that
+	 * encryption-only users and freshly loaded keys do not pay for modInverse.
+     */
+    private final KeyVector w;
+    private final KeyVector b;
+    private final BigInteger q;
+    private final BigInteger r;
+    private volatile DecryptionContext context;
+
+    /**
+     *Constructs a new MerkleHellmanKey from key material.
+     *Pre-Condition: w is superincreasing, b[i] = w[i] * r mod q, q is greater than the sum of w and r is coprime to q.
+     *Post-Condition: w and b are copied so that later changes by the caller are not seen by this key.
+     */
+    MerkleHellmanKey(KeyVector w, KeyVector b, BigInteger q, BigInteger r){
+        this(w, b, q, r, true);
+    }
+
+    /**
+     *Private constructor that copies w and b only when asked to.
+     */
+    private MerkleHellmanKey(KeyVector w, KeyVector b, BigInteger q, BigInteger r, boolean copy){
+        if(w.length() != b.length()){
+            throw new IllegalArgumentException("w and b must have the same length.");
+        }
+        this.w = copy ? w.copy() : w;
+        this.b = copy ? b.copy() : b;
+        this.q = q;
+        this.r = r;
+    }
+
+    /**
+     *Package-private factory for callers that built w and b themselves, such as KeyFile, and will not touch them again.
+     *Post-Condition: returns a key that uses w and b directly instead of copying them.
+     */
+    static MerkleHellmanKey wrap(KeyVector w, KeyVector b, BigInteger q, BigInteger r){
+        return new MerkleHellmanKey(w, b, q, r, false);
+    }
+
+    /**
+     *Method to encrypt a message of up to returnBlockBytes() bytes.
+     *Each byte contributes 8 bits, most significant bit first, and only the elements of b whose bit is set are added.
+     *The sum is kept in a LimbInteger and converted to a BigInteger once at the end.
+     *Pre-Condition: input must be non-null and no longer than returnBlockBytes().
+     *Post-Condition: returns the ciphertext.  Matches MerkleHellman.encryptBytes for the same key and input.
+     *Theta(N), or linear time complexity.
+     */
+    public BigInteger encrypt(byte[] input){
+        return encrypt(input, CipherWorkspace.forThread());
+    }
+
+    /**
+     *Method to encrypt a message using the scratch state of a caller-held workspace.
+     *Post-Condition: returns the same ciphertext as encrypt(byte[]).  Once the workspace has been sized for this key,
+     *the returned BigInteger is the only allocation.
+     */
+    public BigInteger encrypt(byte[] input, CipherWorkspace workspace){
+        checkLength(input.length, returnBlockBytes());
+        long started = CipherMetrics.start();
+        long[][] rows = b.limbs();
+        int[] lengths = b.limbLengths();
+        int width = b.limbWidth();
+        LimbInteger sum = workspace.accumulator(width);
+        int index = 0;
+        for(int j = 0; j < input.length; j++){
+            int bits = input[j] & 0xFF;
+            for(int shift = 7; shift >= 0; shift--){
+                if(((bits >>> shift) & 1) != 0){
+                    sum.add(rows[index], lengths[index]);
+                }
+                index++;
+            }
+        }
+        BigInteger result = sum.toBigInteger(workspace.bytes(8 * width));
+        CipherMetrics.record(CipherMetrics.Operation.ENCRYPT, started, input.length, result.bitLength());
+        return result;
+    }
+
+    /**
+     *Method to encrypt the remaining bytes of a heap or direct buffer, read in place with absolute gets.
+     *Pre-Condition: src.remaining() must be no more than returnBlockBytes().
+     *Post-Condition: returns the same ciphertext as encrypt(byte[]) for the same bytes, and advances src's position to its limit.
+     *Theta(N), or linear time complexity.  Allocates no copy of the message.
+     */
+    public BigInteger encrypt(ByteBuffer src){
+        int length = src.remaining();
+        checkLength(length, returnBlockBytes());
+        long started = CipherMetrics.start();
+        long[][] rows = b.limbs();
+        int[] lengths = b.limbLengths();
+        int width = b.limbWidth();
+        CipherWorkspace workspace = CipherWorkspace.forThread();
+        LimbInteger sum = workspace.accumulator(width);
+        int position = src.position();
+        int index = 0;
+        for(int j = 0; j < length; j++){
+            int bits = src.get(position + j) & 0xFF;
+            for(int shift = 7; shift >= 0; shift--){
+                if(((bits >>> shift) & 1) != 0){
+                    sum.add(rows[index], lengths[index]);
+                }
+                index++;
+            }
+        }
+        src.position(position + length);
+        BigInteger result = sum.toBigInteger(workspace.bytes(8 * width));
+        CipherMetrics.record(CipherMetrics.Operation.ENCRYPT, started, length, result.bitLength());
+        return result;
+    }
+
+    /**
+     *Method to encrypt text as its UTF-8 bytes.
+     *Pre-Condition: the UTF-8 encoding of text must be no longer than returnBlockBytes().
+     */
+    public BigInteger encryptUtf8(CharSequence text){
+        return encrypt(StandardCharsets.UTF_8.encode(CharBuffer.wrap(text)));
+    }
+
+    /**
+     *Method to decrypt a ciphertext into a new byte array.
+     *Post-Condition: returns returnBlockBytes() bytes.  A message shorter than the block is followed by zero bytes.
+     *The greedy walk starts at the message's highest set bit, so short messages decrypt in time proportional to their length
+     *plus the recovery multiply.
+     */
+    public byte[] decrypt(BigInteger ciphertext){
+        byte[] message = new byte[returnBlockBytes()];
+        decrypt(ciphertext, message, 0);
+        return message;
+    }
+
+    /**
+     *Method to decrypt a ciphertext into a caller-supplied buffer.
+     *Pre-Condition: dst has room for returnBlockBytes() bytes starting at offset.
+     *Post-Condition: writes the decrypted block into dst and returns the number of bytes written.
+     *Theta(N), or linear time complexity.
+     */
+    public int decrypt(BigInteger ciphertext, byte[] dst, int offset){
+        return decrypt(ciphertext, returnDecryptionContext(), dst, offset);
+    }
+
+    /**
+     *Method to decrypt a ciphertext into a heap or direct buffer at its position, written in place with absolute puts.
+     *Pre-Condition: dst must be writable with at least returnBlockBytes() bytes remaining, or BufferOverflowException is thrown.
+     *Post-Condition: writes the decrypted block, advances dst's position past it and returns the number of bytes written.
+     *Theta(N), or linear time complexity.
+     */
+    public int decrypt(BigInteger ciphertext, ByteBuffer dst){
+        int length = returnBlockBytes();
+        if(dst.remaining() < length){
+            throw new BufferOverflowException();
+        }
+        long started = CipherMetrics.start();
+        int position = dst.position();
+        LimbInteger remainder = CipherWorkspace.forThread().remainder(w.limbWidth());
+        remainder.set(returnDecryptionContext().recover(ciphertext));
+        MerkleHellman.greedyDecrypt(w, remainder, dst, position, length);
+        dst.position(position + length);
+        CipherMetrics.record(CipherMetrics.Operation.DECRYPT, started, length, ciphertext.bitLength());
+        return length;
+    }
+
+    /**
+     *Method to decrypt a ciphertext produced by encryptUtf8 back into text.
+     *Post-Condition: returns the UTF-8 decoding of the block without its zero padding.  Trailing NUL characters of the
+     *original text are indistinguishable from padding and are dropped too.
+     */
+    public String decryptUtf8(BigInteger ciphertext){
+        byte[] block = decrypt(ciphertext);
+        int end = block.length;
+        while(end > 0 && block[end - 1] == 0){
+            end--;
+        }
+        return new String(block, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     *Method to decrypt a ciphertext into a caller-supplied buffer using the scratch state of a caller-held workspace.
+     *Both the recovery of the knapsack sum and the greedy walk run in the workspace's limbs, so once the workspace has
+     *been sized for this key the call allocates nothing.  The limb recovery reads the ciphertext bit by bit with testBit
+     *and multiplies without Karatsuba, so it is two to four times slower than decrypt(BigInteger, byte[], int).  Use it
+     *where garbage collection pauses matter more than latency, or use the byte array overload.
+     *Pre-Condition: dst has room for returnBlockBytes() bytes starting at offset.
+     */
+    public int decrypt(BigInteger ciphertext, CipherWorkspace workspace, byte[] dst, int offset){
+        int length = returnBlockBytes();
+        if(offset < 0 || offset > dst.length - length){
+            throw new IndexOutOfBoundsException("Buffer too small for " + length + " decrypted bytes.");
+        }
+        long started = CipherMetrics.start();
+        LimbInteger remainder = workspace.remainder(w.limbWidth());
+        returnDecryptionContext().recover(ciphertext, remainder, workspace);
+        MerkleHellman.greedyDecrypt(w, remainder, dst, offset, length);
+        CipherMetrics.record(CipherMetrics.Operation.DECRYPT, started, length, ciphertext.bitLength());
+        return length;
+    }
+
+    /**
+     *Method to decrypt a ciphertext given as its two's-complement big-endian bytes, as written by BigInteger.toByteArray()
+     *and CiphertextCodec, into a caller-supplied buffer using a caller-held workspace.
+     *The bytes are loaded straight into the workspace's limbs, so no BigInteger is built and nothing is allocated.  This is
+     *the fastest allocation-free way to decrypt ciphertexts read from a stream or socket: as fast as decrypt(BigInteger,
+     *byte[], int) up to n = 640, and up to twice as slow at n = 4096, where BigInteger switches to Karatsuba multiplication.
+     *Pre-Condition: ciphertext[offset, offset + length) holds one ciphertext, and dst has room for returnBlockBytes()
+     *bytes starting at dstOffset.
+     */
+    public int decrypt(byte[] ciphertext, int offset, int length, CipherWorkspace workspace, byte[] dst, int dstOffset){
+        int blockBytes = returnBlockBytes();
+        if(dstOffset < 0 || dstOffset > dst.length - blockBytes){
+            throw new IndexOutOfBoundsException("Buffer too small for " + blockBytes + " decrypted bytes.");
+        }
+        long started = CipherMetrics.start();
+        LimbInteger remainder = workspace.remainder(w.limbWidth());
+        returnDecryptionContext().recover(ciphertext, offset, length, remainder, workspace);
+        MerkleHellman.greedyDecrypt(w, remainder, dst, dstOffset, blockBytes);
+        CipherMetrics.record(CipherMetrics.Operation.DECRYPT, started, blockBytes, 8 * length);
+        return blockBytes;
+    }
+
+    /**
+     *Package-private method to decrypt with a DecryptionContext held by the caller, such as one cached by KeyRing.
+     *Pre-Condition: context must have been built from this key's q and r.
+     */
+    int decrypt(BigInteger ciphertext, DecryptionContext context, byte[] dst, int offset){
+        int length = returnBlockBytes();
+        if(offset < 0 || offset > dst.length - length){
+            throw new IndexOutOfBoundsException("Buffer too small for " + length + " decrypted bytes.");
+        }
+        long started = CipherMetrics.start();
+        LimbInteger remainder = CipherWorkspace.forThread().remainder(w.limbWidth());
+        remainder.set(context.recover(ciphertext));
+        MerkleHellman.greedyDecrypt(w, remainder, dst, offset, length);
+        CipherMetrics.record(CipherMetrics.Operation.DECRYPT, started, length, ciphertext.bitLength());
+        return length;
+    }
+
+    /**
+     *Method to encrypt many independent messages on the common ForkJoinPool.
+     *Post-Condition: returns ciphertexts in the same order as inputs.
+     */
+    public List<BigInteger> encryptAll(List<byte[]> inputs){
+        return Arrays.asList(encryptAll(inputs.toArray(new byte[0][]), ForkJoinPool.commonPool()));
+    }
+
+    /**
+     *Method to encrypt many independent messages on the given ForkJoinPool.
+     *Pre-Condition: every input must satisfy the pre-condition of encrypt.
+     *Post-Condition: returns an array whose element i is the ciphertext of inputs[i].
+     */
+    public BigInteger[] encryptAll(byte[][] inputs, ForkJoinPool pool){
+        BigInteger[] results = new BigInteger[inputs.length];
+        pool.submit(() -> IntStream.range(0, inputs.length).parallel()
+                .forEach(i -> results[i] = encrypt(inputs[i]))).join();
+        return results;
+    }
+
+    /**
+     *Method to decrypt many independent ciphertexts on the common ForkJoinPool.
+     *Post-Condition: returns decrypted blocks in the same order as inputs.
+     */
+    public List<byte[]> decryptAll(List<BigInteger> ciphertexts){
+        return Arrays.asList(decryptAll(ciphertexts.toArray(new BigInteger[0]), ForkJoinPool.commonPool()));
+    }
+
+    /**
+     *Method to decrypt many independent ciphertexts on the given ForkJoinPool.
+     *Post-Condition: returns an array whose element i is the decryption of ciphertexts[i].
+     */
+    public byte[][] decryptAll(BigInteger[] ciphertexts, ForkJoinPool pool){
+        byte[][] results = new byte[ciphertexts.length][];
+        pool.submit(() -> IntStream.range(0, ciphertexts.length).parallel()
+                .forEach(i -> results[i] = decrypt(ciphertexts[i]))).join();
+        return results;
+    }
+
+    /**
+     *Method to return the number of elements in w and b.
+     *Theta(1), constant time complexity.
+     */
+    public int returnVectorLength(){
+        return w.length();
+    }
+
+    /**
+     *Method to return the largest number of bytes one ciphertext can hold, vectorlength / 8.
+     *Theta(1), constant time complexity.
+     */
+    public int returnBlockBytes(){
+        return w.length() / 8;
+    }
+
+    /**
+     *Method to return a copy of the public key, b.
+     *Theta(n), linear time complexity.
+     */
+    public KeyVector returnb(){
+        return b.copy();
+    }
+
+    /**
+     *Method to return a copy of the private key, w.
+     *Theta(n), linear time complexity.
+     */
+    public KeyVector returnw(){
+        return w.copy();
+    }
+
+    /**
+     *Method to return a pointer to the modulus q.
+     *Theta(1), constant time complexity.
+     */
+    public BigInteger returnQ(){
+        return q;
+    }
+
+    /**
+     *Method to return a pointer to the multiplier r.
+     *Theta(1), constant time complexity.
+     */
+    public BigInteger returnR(){
+        return r;
+    }
+
+    /**
+     *Method to return a pointer to the DecryptionContext of this key, building it on first use.
+     *Concurrent first calls may each build a context; all are equal and one of them is kept.
+     *Theta(1) after the first call.
+     */
+    public DecryptionContext returnDecryptionContext(){
+        DecryptionContext result = context;
+        if(result == null){
+            result = new DecryptionContext(q, r);
+            context = result;
+        }
+        return result;
+    }
+
+    /**
+     *Package-private accessors to the key vectors without copying, for classes in this package that only read them.
+     */
+    KeyVector wVector(){
+        return w;
+    }
+
+    KeyVector bVector(){
+        return b;
+    }
+
+    /**
+     *Package-private method to reject messages that do not fit in one block, shared by every encryptor.
+     *Post-Condition: throws IllegalArgumentException if bytes is greater than blockBytes.
+     */
+    static void checkLength(int bytes, int blockBytes){
+        if(bytes > blockBytes){
+            throw new IllegalArgumentException("Message of " + bytes + " bytes exceeds the block size of " + blockBytes + " bytes.");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * The class OffHeapKey is an immutable Merkle-Hellman key whose public key b, and optionally private key w, are stored
+ * in OffHeapVectors instead of BigIntegers on the heap.
+ * Encryption adds the selected rows of b limb by limb into a long[] accumulator and propagates carries once at the end.
+ * Decryption runs the greedy walk directly against the rows of w.  Results match MerkleHellmanKey for the same key.
+ */
+public class OffHeapKey {
+
+	/**
+     *Private instance variables for the OffHeapKey class.
+	 * OffHeapVector b - public key.
+	 * OffHeapVector w - private key, or null for an encryption-only key.
+	 * BigInteger q, r - modulus and multiplier.
+	 * DecryptionContext context - built on first decryption.
+     */
+    private final OffHeapVector b;
+    private final OffHeapVector w;
+    private final BigInteger q;
+    private final BigInteger r;
+    private volatile DecryptionContext context;
+
+    private OffHeapKey(OffHeapVector b, OffHeapVector w, BigInteger q, BigInteger r){
+        this.b = b;
+        this.w = w;
+        this.q = q;
+        this.r = r;
+    }
+
+    /**
+     *Method to copy a MerkleHellmanKey off the heap.
+     *Post-Condition: returns a key holding b, and w if includeW is true, in direct memory.  Without w it can only encrypt.
+     *Theta(n * width), linear in the size of the key.
+     */
+    public static OffHeapKey of(MerkleHellmanKey key, boolean includeW){
+        return new OffHeapKey(new OffHeapVector(key.bVector()), includeW ? new OffHeapVector(key.wVector()) : null,
+                key.returnQ(), key.returnR());
+    }
+
+    /**
+     *Method to encrypt a message of up to returnBlockBytes() bytes.
+     *Post-Condition: returns the same ciphertext as MerkleHellmanKey.encrypt for the same key and input.
+     *Theta(N * width) limb additions with no carry handling, then one Theta(width) normalization.
+     */
+    public BigInteger encrypt(byte[] input){
+        MerkleHellmanKey.checkLength(input.length, returnBlockBytes());
+        long started = CipherMetrics.start();
+        long[] acc = new long[b.width()];
+        int index = 0;
+        for(int j = 0; j < input.length; j++){
+            int bits = input[j] & 0xFF;
+            for(int shift = 7; shift >= 0; shift--){
+                if(((bits >>> shift) & 1) != 0){
+                    b.addTo(acc, index);
+                }
+                index++;
+            }
+        }
+        BigInteger result = OffHeapVector.normalize(acc);
+        CipherMetrics.record(CipherMetrics.Operation.ENCRYPT, started, input.length, result.bitLength());
+        return result;
+    }
+
+    /**
+     *Method to decrypt a ciphertext into a new byte array of returnBlockBytes() bytes, zero padded.
+     *Pre-Condition: the key must have been created with includeW.
+     */
+    public byte[] decrypt(BigInteger ciphertext){
+        byte[] message = new byte[returnBlockBytes()];
+        decrypt(ciphertext, message, 0);
+        return message;
+    }
+
+    /**
+     *Method to decrypt a ciphertext into a caller-supplied buffer.
+     *The walk starts at the highest set bit, found by binary search over w, as in MerkleHellman.greedyDecrypt.
+     *Pre-Condition: the key must have been created with includeW, and dst has room for returnBlockBytes() bytes at offset.
+     *Post-Condition: writes the decrypted block into dst and returns the number of bytes written.
+     */
+    public int decrypt(BigInteger ciphertext, byte[] dst, int offset){
+        if(w == null){
+            throw new IllegalStateException("This key holds no private key; create it with includeW to decrypt.");
+        }
+        int length = returnBlockBytes();
+        if(offset < 0 || offset > dst.length - length){
+            throw new IndexOutOfBoundsException("Buffer too small for " + length + " decrypted bytes.");
+        }
+        long started = CipherMetrics.start();
+        long[] remainder = LimbInteger.toLimbs(returnDecryptionContext().recover(ciphertext), w.words());
+        int used = LimbInteger.significantLength(remainder);
+
+        int low = 0;
+        int high = w.length() - 1;
+        int top = -1;
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            if(w.compareRow(remainder, used, mid) >= 0){
+                top = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        Arrays.fill(dst, offset, offset + length, (byte) 0);
+        for(int i = top; i >= 0 && used > 0; i--){
+            if(w.compareRow(remainder, used, i) >= 0){
+                used = w.subtractRow(remainder, used, i);
+                if(i < 8 * length){
+                    dst[offset + (i >>> 3)] |= (byte) (0x80 >>> (i & 7));
+                }
+            }
+        }
+        CipherMetrics.record(CipherMetrics.Operation.DECRYPT, started, length, ciphertext.bitLength());
+        return length;
+    }
+
+    /**
+     *Method to return the number of elements in b.
+     */
+    public int returnVectorLength(){
+        return b.length();
+    }
+
+    /**
+     *Method to return the largest number of bytes one ciphertext can hold, vectorlength / 8.
+     */
+    public int returnBlockBytes(){
+        return b.length() / 8;
+    }
+
+    /**
+     *Method to return the number of bytes this key holds off the heap.
+     */
+    public long returnOffHeapBytes(){
+        return b.returnOffHeapBytes() + (w == null ? 0 : w.returnOffHeapBytes());
+    }
+
+    public BigInteger returnQ(){
+        return q;
+    }
+
+    public BigInteger returnR(){
+        return r;
+    }
+
+    /**
+     *Method to return the DecryptionContext of this key, building it on first use.
+     */
+    public DecryptionContext returnDecryptionContext(){
+        DecryptionContext result = context;
+        if(result == null){
+            result = new DecryptionContext(q, r);
+            context = result;
+        }
+        return result;
+    }
+}
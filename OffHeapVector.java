@@ -0,0 +1,211 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * The class OffHeapVector holds a key vector as fixed-width rows of unsigned 32-bit little-endian limbs in one direct
+ * ByteBuffer outside the Java heap.  The GC sees a single buffer object instead of one BigInteger and int[] per element,
+ * and rows are laid out one after another so sums read contiguous memory.
+ * The same memory is also viewed as 64-bit words, so the summing loop loads two limbs at a time.
+ * Only the significant length of each row is kept on the heap, as an int[].  The buffer is released when this object is
+ * collected.
+ */
+public class OffHeapVector {
+
+	/**
+     *Private instance variables for the OffHeapVector class.
+	 * IntBuffer limbs - row i occupies limbs[i * width, (i + 1) * width), least significant limb first.
+	 * LongBuffer words - the same memory as pairs of limbs; word k of row i holds limbs 2k and 2k + 1.
+	 * Int length - number of rows.
+	 * Int width - limbs per row, even, with 32 bits of headroom so that all rows can be summed without overflow.
+	 * Int[] lengths - number of significant limbs in each row.
+     */
+    private final IntBuffer limbs;
+    private final LongBuffer words;
+    private final int length;
+    private final int width;
+    private final int[] lengths;
+
+    /**
+     *Constructs a new OffHeapVector holding the elements of a KeyVector.
+     *Pre-Condition: every element is non-negative, and the rows must fit in one ByteBuffer of at most Integer.MAX_VALUE
+     *bytes.  Throws IllegalArgumentException otherwise.
+     *Post-Condition: the vector no longer refers to source, so source may be discarded.
+     *Theta(n * width), linear in the total size of the key.
+     */
+    OffHeapVector(KeyVector source){
+        length = source.length();
+        int bits = 0;
+        for(int i = 0; i < length; i++){
+            bits = Math.max(bits, source.get(i).bitLength());
+        }
+        width = ((bits + 32 + 63) >>> 6) << 1;
+        long capacity = 4L * length * width;
+        if(capacity > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Key of " + length + " elements of " + bits + " bits needs " + capacity
+                + " bytes off-heap, more than one buffer can hold (" + Integer.MAX_VALUE + ").");
+        }
+        ByteBuffer memory = ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.LITTLE_ENDIAN);
+        limbs = memory.asIntBuffer();
+        words = memory.asLongBuffer();
+        lengths = new int[length];
+        for(int i = 0; i < length; i++){
+            byte[] bytes = source.get(i).toByteArray();
+            int base = i * width;
+            int used = 0;
+            for(int k = 0; k < width; k++){
+                int limb = 0;
+                for(int j = 0; j < 4; j++){
+                    int index = bytes.length - 1 - (4 * k + j);
+                    if(index >= 0){
+                        limb |= (bytes[index] & 0xFF) << (8 * j);
+                    }
+                }
+                limbs.put(base + k, limb);
+                if(limb != 0){
+                    used = k + 1;
+                }
+            }
+            lengths[i] = used;
+        }
+    }
+
+    /**
+     *Method to return the number of rows.
+     */
+    public int length(){
+        return length;
+    }
+
+    /**
+     *Method to return the number of 32-bit limbs in each row.
+     */
+    public int width(){
+        return width;
+    }
+
+    /**
+     *Method to return the number of bytes held off the heap.
+     */
+    public long returnOffHeapBytes(){
+        return 4L * length * width;
+    }
+
+    /**
+     *Method to return row i as a new BigInteger.
+     *Theta(width), linear in the row size.
+     */
+    public BigInteger get(int i){
+        byte[] bytes = new byte[4 * width];
+        int base = i * width;
+        for(int k = 0; k < width; k++){
+            int limb = limbs.get(base + k);
+            int at = bytes.length - 4 * (k + 1);
+            bytes[at] = (byte) (limb >>> 24);
+            bytes[at + 1] = (byte) (limb >>> 16);
+            bytes[at + 2] = (byte) (limb >>> 8);
+            bytes[at + 3] = (byte) limb;
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     *Method to add row i into a lazy accumulator, one 32-bit limb into each 64-bit slot with no carry propagation.
+     *Pre-Condition: acc has at least width() slots.  Up to 2^32 rows can be added before a slot can overflow.
+     *Theta(significant length of row i).  The loop is a plain strided add that the JIT can unroll and vectorize.
+     */
+    public void addTo(long[] acc, int i){
+        int base = (i * width) >>> 1;
+        int used = (lengths[i] + 1) >>> 1;
+        for(int k = 0; k < used; k++){
+            long word = words.get(base + k);
+            acc[2 * k] += word & 0xFFFFFFFFL;
+            acc[2 * k + 1] += word >>> 32;
+        }
+    }
+
+    /**
+     *Method to convert a lazy accumulator filled by addTo into a BigInteger, propagating all carries in one pass.
+     *Theta(acc.length), linear time complexity.
+     */
+    public static BigInteger normalize(long[] acc){
+        byte[] bytes = new byte[4 * acc.length + 8];
+        long carry = 0L;
+        for(int k = 0; k < acc.length; k++){
+            long value = (acc[k] & 0xFFFFFFFFL) + carry;
+            carry = (acc[k] >>> 32) + (value >>> 32);
+            int at = bytes.length - 4 * (k + 1);
+            bytes[at] = (byte) (value >>> 24);
+            bytes[at + 1] = (byte) (value >>> 16);
+            bytes[at + 2] = (byte) (value >>> 8);
+            bytes[at + 3] = (byte) value;
+        }
+        for(int at = bytes.length - 4 * acc.length - 1; at >= 0; at--){
+            bytes[at] = (byte) carry;
+            carry >>>= 8;
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     *Method to return the number of 64-bit words in each row, width() / 2.
+     */
+    public int words(){
+        return width >>> 1;
+    }
+
+    /**
+     *Method to compare a value held as 64-bit little-endian words, such as a LimbInteger limb array, with row i.
+     *Pre-Condition: used equals the number of significant words of value.
+     *Post-Condition: returns a negative number, zero or a positive number as value is less than, equal to or greater than row i.
+     *Theta(1) when the significant lengths differ.
+     */
+    public int compareRow(long[] value, int used, int i){
+        int rowUsed = (lengths[i] + 1) >>> 1;
+        if(used != rowUsed){
+            return used < rowUsed ? -1 : 1;
+        }
+        int base = (i * width) >>> 1;
+        for(int k = used - 1; k >= 0; k--){
+            long word = words.get(base + k);
+            if(value[k] != word){
+                return Long.compareUnsigned(value[k], word);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     *Method to subtract row i in place from a value held as 64-bit little-endian words.
+     *Pre-Condition: row i must not be greater than value.
+     *Post-Condition: returns the new number of significant words of value.
+     *Theta(significant length of row i) plus borrow propagation.
+     */
+    public int subtractRow(long[] value, int used, int i){
+        int base = (i * width) >>> 1;
+        int rowUsed = (lengths[i] + 1) >>> 1;
+        long borrow = 0L;
+        int k = 0;
+        for(; k < rowUsed; k++){
+            long x = value[k];
+            long y = words.get(base + k);
+            long diff = x - y;
+            long borrowOut = Long.compareUnsigned(x, y) < 0 ? 1L : 0L;
+            if(Long.compareUnsigned(diff, borrow) < 0){
+                borrowOut = 1L;
+            }
+            value[k] = diff - borrow;
+            borrow = borrowOut;
+        }
+        for(; borrow != 0L && k < used; k++){
+            borrow = value[k] == 0L ? 1L : 0L;
+            value[k]--;
+        }
+        while(used > 0 && value[used - 1] == 0L){
+            used--;
+        }
+        return used;
+    }
+}
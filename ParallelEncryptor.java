@@ -0,0 +1,115 @@
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The class ParallelEncryptor encrypts one large block on several cores.
+ * The message's bit range is split in half recursively until a range holds no more than cutoffBits bits.  Each range
+ * sums its selected elements of b into its own LimbInteger on a ForkJoinPool, and the partial sums are added back together
+ * up the same tree.  Messages of at most cutoffBits bits are encrypted serially on the calling thread.
+ * Ciphertexts are identical to MerkleHellmanKey.encrypt.  Worth using only for large keys, 8K bits and up, where one
+ * block's latency matters more than total throughput.
+ */
+public class ParallelEncryptor {
+
+	/**
+     *Default number of bits below which a range is summed serially.
+     */
+    public static final int DEFAULT_CUTOFF_BITS = 4096;
+
+	/**
+     *Private instance variables for the ParallelEncryptor class.
+	 * MerkleHellmanKey key - key whose b is summed.
+	 * ForkJoinPool pool - pool the partial sums run on.
+	 * Int cutoffBits - largest range summed without splitting.
+     */
+    private final MerkleHellmanKey key;
+    private final ForkJoinPool pool;
+    private final int cutoffBits;
+
+    /**
+     *Constructs a new ParallelEncryptor with the default cutoff on the common pool.
+     */
+    ParallelEncryptor(MerkleHellmanKey key){
+        this(key, ForkJoinPool.commonPool(), DEFAULT_CUTOFF_BITS);
+    }
+
+    /**
+     *Constructs a new ParallelEncryptor.
+     *Pre-Condition: cutoffBits must be positive.  Smaller cutoffs give more, smaller tasks.
+     */
+    ParallelEncryptor(MerkleHellmanKey key, ForkJoinPool pool, int cutoffBits){
+        if(cutoffBits <= 0){
+            throw new IllegalArgumentException("Cutoff must be positive.");
+        }
+        this.key = key;
+        this.pool = pool;
+        this.cutoffBits = cutoffBits;
+    }
+
+    /**
+     *Method to encrypt a message of up to key.returnBlockBytes() bytes.
+     *Post-Condition: returns the same ciphertext as MerkleHellmanKey.encrypt for the same key and input.
+     *Theta(N) work in total, Theta(cutoffBits + log(N / cutoffBits) * width) span.
+     */
+    public BigInteger encrypt(byte[] input){
+        int bits = 8 * input.length;
+        if(bits <= cutoffBits){
+            return key.encrypt(input);
+        }
+        MerkleHellmanKey.checkLength(input.length, key.returnBlockBytes());
+        long started = CipherMetrics.start();
+        KeyVector b = key.bVector();
+        BigInteger result = pool.invoke(new SumTask(input, b.limbs(), b.limbLengths(), b.limbWidth(), 0, bits)).toBigInteger();
+        CipherMetrics.record(CipherMetrics.Operation.ENCRYPT, started, input.length, result.bitLength());
+        return result;
+    }
+
+    /**
+     *Method to return the serial cutoff in bits.
+     */
+    public int returnCutoffBits(){
+        return cutoffBits;
+    }
+
+    /**
+     *Task summing the elements of b selected by message bits [from, to).
+     */
+    private final class SumTask extends RecursiveTask<LimbInteger> {
+        private static final long serialVersionUID = 1L;
+        private final byte[] input;
+        private final long[][] rows;
+        private final int[] lengths;
+        private final int width;
+        private final int from;
+        private final int to;
+
+        SumTask(byte[] input, long[][] rows, int[] lengths, int width, int from, int to){
+            this.input = input;
+            this.rows = rows;
+            this.lengths = lengths;
+            this.width = width;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected LimbInteger compute(){
+            if(to - from <= cutoffBits){
+                LimbInteger sum = new LimbInteger(width);
+                for(int index = from; index < to; index++){
+                    if(((input[index >>> 3] >>> (7 - (index & 7))) & 1) != 0){
+                        sum.add(rows[index], lengths[index]);
+                    }
+                }
+                return sum;
+            }
+            int mid = (from + to) >>> 1;
+            SumTask left = new SumTask(input, rows, lengths, width, from, mid);
+            left.fork();
+            LimbInteger right = new SumTask(input, rows, lengths, width, mid, to).compute();
+            LimbInteger sum = left.join();
+            sum.add(right);
+            return sum;
+        }
+    }
+}
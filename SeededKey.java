@@ -0,0 +1,325 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * The class SeededKey is a Merkle-Hellman key that stores a 64-bit seed instead of the vectors w and b.
+ * The increment that createw draws from [MinSeed, MaxSeed] for element i is instead derived from the seed and i with the
+ * SplittableRandom mixing function, so any element can be regenerated on demand.  The key keeps only the seed, q, r and
+ * the sum of w, plus optional checkpoints of the running sum every checkpointInterval elements.
+ *
+ * With S(i) the sum of w[0..i] and incr(i) the increment of element i, createw's rule is w[i] = S(i-1) + incr(i), so
+ * S(i) = 2 * S(i-1) + incr(i).  Encryption walks forward and gets b[i] from b[i-1] with one small multiple of r, because
+ * w[i] - 2 * w[i-1] = incr(i) - incr(i-1).  Decryption walks backward from S(n-1) = wSum, or from a checkpoint,
+ * with S(i-1) = (S(i) - incr(i)) / 2.
+ * Resident size is O(n^2 / checkpointInterval) bits instead of the O(n^2) bits of a materialized w and b.  Each operation
+ * costs more CPU in exchange, roughly one BigInteger shift and add per element walked.
+ */
+public class SeededKey {
+
+	/**
+     *Odd constant used to spread consecutive indices before mixing, as SplittableRandom does.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+     *Private instance variables for the SeededKey class.
+	 * Long seed - source of every increment.
+	 * Int vectorlength, minSeed, maxSeed - key size and increment range, as in MerkleHellman.
+	 * BigInteger q, r, wSum - modulus, multiplier and sum of w.
+	 * Int interval - elements between checkpoints, or 0 for none.
+	 * BigInteger[] checkpoints - checkpoints[j] is S(j * interval - 1), with checkpoints[0] = 0.
+	 * BigInteger[] stepR - stepR[d + maxSeed - minSeed] is d * r mod q, for the b recurrence.
+	 * DecryptionContext context - built on first decryption.
+     */
+    private final long seed;
+    private final int vectorlength;
+    private final int minSeed;
+    private final int maxSeed;
+    private final BigInteger q;
+    private final BigInteger r;
+    private final BigInteger wSum;
+    private final int interval;
+    private final BigInteger[] checkpoints;
+    private final BigInteger[] stepR;
+    private volatile DecryptionContext context;
+
+    /**
+     *Constructs a SeededKey from stored parameters, regenerating wSum and the checkpoints from the seed.
+     *Pre-Condition: 1 <= min <= max, length is positive and a multiple of 8 for whole-byte blocks, q is greater than the sum of w
+     *and r is coprime to q.  checkpointInterval is 0 for no checkpoints.
+     *Theta(n) BigInteger shifts and additions.
+     */
+    SeededKey(long seed, int length, int min, int max, BigInteger q, BigInteger r, int checkpointInterval){
+        if(min < 1 || max < min || length <= 0 || checkpointInterval < 0){
+            throw new IllegalArgumentException("Invalid seeded key parameters.");
+        }
+        this.seed = seed;
+        this.vectorlength = length;
+        this.minSeed = min;
+        this.maxSeed = max;
+        this.q = q;
+        this.r = r;
+        this.interval = checkpointInterval;
+        checkpoints = checkpointInterval == 0 ? new BigInteger[0] : new BigInteger[(length + checkpointInterval - 1) / checkpointInterval];
+
+        BigInteger sum = BigInteger.ZERO;
+        for(int i = 0; i < length; i++){
+            if(interval != 0 && i % interval == 0){
+                checkpoints[i / interval] = sum;
+            }
+            sum = sum.shiftLeft(1).add(BigInteger.valueOf(increment(i)));
+        }
+        wSum = sum;
+        if(q.compareTo(wSum) <= 0){
+            throw new IllegalArgumentException("q must be greater than the sum of w.");
+        }
+
+        int range = max - min;
+        stepR = new BigInteger[2 * range + 1];
+        for(int d = -range; d <= range; d++){
+            stepR[d + range] = BigInteger.valueOf(d).multiply(r).mod(q);
+        }
+    }
+
+    /**
+     *Method to generate a new SeededKey.  The seed comes from random, q is wSum plus one more derived increment as in
+     *createw, and r is drawn by MerkleHellman.genRandomCoprime from the same random source.
+     *Use a SecureRandom for keys that will protect real data.
+     */
+    public static SeededKey generate(int length, int min, int max, int checkpointInterval, RandomGenerator random){
+        long seed = random.nextLong();
+        BigInteger sum = BigInteger.ZERO;
+        for(int i = 0; i < length; i++){
+            sum = sum.shiftLeft(1).add(BigInteger.valueOf(increment(seed, i, min, max)));
+        }
+        BigInteger q = sum.add(BigInteger.valueOf(increment(seed, length, min, max)));
+        BigInteger r = MerkleHellman.genRandomCoprime(q, random);
+        return new SeededKey(seed, length, min, max, q, r, checkpointInterval);
+    }
+
+    /**
+     *Method to return element i of the private key w.
+     *Theta(checkpointInterval) BigInteger shifts and additions with checkpoints, Theta(i) without.
+     */
+    public BigInteger returnW(int i){
+        if(i < 0 || i >= vectorlength){
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + vectorlength + ".");
+        }
+        int from = interval == 0 ? 0 : (i / interval) * interval;
+        BigInteger sum = interval == 0 ? BigInteger.ZERO : checkpoints[i / interval];
+        for(int t = from; t < i; t++){
+            sum = sum.shiftLeft(1).add(BigInteger.valueOf(increment(t)));
+        }
+        return sum.add(BigInteger.valueOf(increment(i)));
+    }
+
+    /**
+     *Method to return element i of the public key b, w[i] * r mod q.
+     */
+    public BigInteger returnB(int i){
+        return returnW(i).multiply(r).mod(q);
+    }
+
+    /**
+     *Method to encrypt a message of up to returnBlockBytes() bytes.
+     *Post-Condition: returns the same ciphertext as MerkleHellmanKey.encrypt on the materialized key.
+     *Theta(8 * input.length) steps of the b recurrence, each one shift, one addition and at most two subtractions of q.
+     */
+    public BigInteger encrypt(byte[] input){
+        MerkleHellmanKey.checkLength(input.length, returnBlockBytes());
+        long started = CipherMetrics.start();
+        int range = maxSeed - minSeed;
+        BigInteger sum = BigInteger.ZERO;
+        BigInteger bi = null;
+        int previous = 0;
+        int index = 0;
+        for(int j = 0; j < input.length; j++){
+            int bits = input[j] & 0xFF;
+            for(int shift = 7; shift >= 0; shift--){
+                int incr = increment(index);
+                if(bi == null){
+                    bi = BigInteger.valueOf(incr).multiply(r).mod(q);
+                } else {
+                    bi = bi.shiftLeft(1).add(stepR[incr - previous + range]);
+                    while(bi.compareTo(q) >= 0){
+                        bi = bi.subtract(q);
+                    }
+                }
+                if(((bits >>> shift) & 1) != 0){
+                    sum = sum.add(bi);
+                }
+                previous = incr;
+                index++;
+            }
+        }
+        CipherMetrics.record(CipherMetrics.Operation.ENCRYPT, started, input.length, sum.bitLength());
+        return sum;
+    }
+
+    /**
+     *Method to decrypt a ciphertext into a new byte array of returnBlockBytes() bytes, zero padded.
+     */
+    public byte[] decrypt(BigInteger ciphertext){
+        byte[] message = new byte[returnBlockBytes()];
+        decrypt(ciphertext, message, 0);
+        return message;
+    }
+
+    /**
+     *Method to decrypt a ciphertext into a caller-supplied buffer.
+     *With checkpoints, the walk starts at the end of the checkpoint block holding the message's highest set bit, found by
+     *binary search over the checkpoints, so short messages walk only the low part of w.
+     *Pre-Condition: dst has room for returnBlockBytes() bytes starting at offset.
+     *Post-Condition: writes the decrypted block into dst and returns the number of bytes written.
+     */
+    public int decrypt(BigInteger ciphertext, byte[] dst, int offset){
+        int length = returnBlockBytes();
+        if(offset < 0 || offset > dst.length - length){
+            throw new IndexOutOfBoundsException("Buffer too small for " + length + " decrypted bytes.");
+        }
+        long started = CipherMetrics.start();
+        BigInteger remainder = returnDecryptionContext().recover(ciphertext);
+        Arrays.fill(dst, offset, offset + length, (byte) 0);
+
+        int top = vectorlength - 1;
+        BigInteger sum = wSum;
+        if(interval != 0){
+            int block = -1;
+            int low = 0;
+            int high = checkpoints.length - 1;
+            while(low <= high){
+                int mid = (low + high) >>> 1;
+                BigInteger first = checkpoints[mid].add(BigInteger.valueOf(increment(mid * interval)));
+                if(remainder.compareTo(first) >= 0){
+                    block = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if(block < 0){
+                top = -1;
+            } else if(block + 1 < checkpoints.length){
+                top = (block + 1) * interval - 1;
+                sum = checkpoints[block + 1];
+            }
+        }
+
+        for(int i = top; i >= 0 && remainder.signum() > 0; i--){
+            int incr = increment(i);
+            BigInteger before = sum.subtract(BigInteger.valueOf(incr)).shiftRight(1);
+            BigInteger wi = before.add(BigInteger.valueOf(incr));
+            if(remainder.compareTo(wi) >= 0){
+                remainder = remainder.subtract(wi);
+                if(i < 8 * length){
+                    dst[offset + (i >>> 3)] |= (byte) (0x80 >>> (i & 7));
+                }
+            }
+            sum = before;
+        }
+        CipherMetrics.record(CipherMetrics.Operation.DECRYPT, started, length, ciphertext.bitLength());
+        return length;
+    }
+
+    /**
+     *Method to expand the key into a MerkleHellmanKey holding w and b, for use with KeyFile, BlockStream and the other
+     *classes that take one.
+     *Theta(n) BigInteger operations and Theta(n^2) bits of memory.
+     */
+    public MerkleHellmanKey materialize(){
+        KeyVector w = new KeyVector(vectorlength);
+        KeyVector b = new KeyVector(vectorlength);
+        BigInteger sum = BigInteger.ZERO;
+        for(int i = 0; i < vectorlength; i++){
+            BigInteger incr = BigInteger.valueOf(increment(i));
+            BigInteger wi = sum.add(incr);
+            w.set(i, wi);
+            b.set(i, wi.multiply(r).mod(q));
+            sum = sum.add(wi);
+        }
+        return MerkleHellmanKey.wrap(w, b, q, r);
+    }
+
+    /**
+     *Method to return an estimate of the heap held by this key in bytes: q, r, wSum, the checkpoints and the r step table.
+     */
+    public long returnResidentBytes(){
+        long total = 64 + 3 * KeyVector.estimateBytes(q.bitLength());
+        for(BigInteger checkpoint : checkpoints){
+            total += 8 + KeyVector.estimateBytes(checkpoint.bitLength());
+        }
+        for(BigInteger step : stepR){
+            total += 8 + KeyVector.estimateBytes(step.bitLength());
+        }
+        return total;
+    }
+
+    /**
+     *Methods to return the key parameters.
+     */
+    public long returnSeed(){
+        return seed;
+    }
+
+    public int returnVectorLength(){
+        return vectorlength;
+    }
+
+    public int returnBlockBytes(){
+        return vectorlength / 8;
+    }
+
+    public int returnMinSeed(){
+        return minSeed;
+    }
+
+    public int returnMaxSeed(){
+        return maxSeed;
+    }
+
+    public int returnCheckpointInterval(){
+        return interval;
+    }
+
+    public BigInteger returnQ(){
+        return q;
+    }
+
+    public BigInteger returnR(){
+        return r;
+    }
+
+    /**
+     *Method to return the DecryptionContext of this key, building it on first use.
+     */
+    public DecryptionContext returnDecryptionContext(){
+        DecryptionContext result = context;
+        if(result == null){
+            result = new DecryptionContext(q, r);
+            context = result;
+        }
+        return result;
+    }
+
+    /**
+     *Private method to return the increment of element i.
+     */
+    private int increment(int i){
+        return increment(seed, i, minSeed, maxSeed);
+    }
+
+    /**
+     *Private method to derive the increment of element i from the seed: the index is spread by GOLDEN_GAMMA, mixed with
+     *SplittableRandom's 64-bit finalizer, and mapped onto [min, max] with a multiply-shift.
+     *Theta(1), allocates nothing.
+     */
+    private static int increment(long seed, int i, int min, int max){
+        long z = seed + (i + 1L) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z ^= z >>> 31;
+        long bound = (long) max - min + 1;
+        return min + (int) (((z >>> 32) * bound) >>> 32);
+    }
+}
@@ -0,0 +1,134 @@
+import java.math.BigInteger;
+
+/**
+ * The class WindowedEncryptor is an optional accelerated encryptor built from a fixed Merkle-Hellman public key, b.
+ * The bit vector is split into windows of windowBits bits, and for every window all 2^windowBits partial sums of b are
+ * precomputed.  Encryption then needs one table lookup and at most one BigInteger addition per window instead of one per set bit.
+ * Wider windows trade memory, reported by returnTableBytes(), for fewer additions.
+ */
+public class WindowedEncryptor {
+
+	/**
+     *Private instance variables for the WindowedEncryptor class.
+	 * Int windowBits - width of each window in bits.
+	 * Int vectorlength - number of elements of b covered by the tables.
+	 * BigInteger[][] tables - tables[i][v] is the sum of the elements of b selected by the bits of v in window i.
+	 * Long tableBytes - estimated heap footprint of the tables.
+     */
+    private final int windowBits;
+    private final int vectorlength;
+    private final BigInteger[][] tables;
+    private final long tableBytes;
+
+    /**
+     *Constructs a new WindowedEncryptor for the public key of an immutable MerkleHellmanKey.
+     *Pre-Condition: windowBits must be in the range [1, 16].
+     */
+    WindowedEncryptor(MerkleHellmanKey key, int windowBits){
+        this(key.bVector(), windowBits);
+    }
+
+    /**
+     *Constructs a new WindowedEncryptor for a public key vector, such as MerkleHellman.returnbVector().
+     *Pre-Condition: b must not be modified afterwards and windowBits must be in the range [1, 16].
+     *Post-Condition: all window tables are built.
+     *Theta(N * 2^k / k) BigInteger additions for N = b.length() and k = windowBits.
+     */
+    WindowedEncryptor(KeyVector b, int windowBits){
+        if(windowBits < 1 || windowBits > 16){
+            throw new IllegalArgumentException("Window width must be between 1 and 16 bits.");
+        }
+        this.windowBits = windowBits;
+        this.vectorlength = b.length();
+        int windows = (vectorlength + windowBits - 1) / windowBits;
+        int entries = 1 << windowBits;
+        tables = new BigInteger[windows][];
+        long bytes = 16L + 8L * windows;
+
+        for(int i = 0; i < windows; i++){
+            BigInteger[] table = new BigInteger[entries];
+            table[0] = BigInteger.ZERO;
+            int start = i * windowBits;
+            for(int v = 1; v < entries; v++){
+                int lowBit = Integer.numberOfTrailingZeros(v);
+                int index = start + (windowBits - 1 - lowBit);
+                BigInteger rest = table[v & (v - 1)];
+                table[v] = index < vectorlength ? rest.add(b.get(index)) : rest;
+                bytes += KeyVector.estimateBytes(table[v].bitLength());
+            }
+            tables[i] = table;
+            bytes += 16L + 8L * entries;
+        }
+        tableBytes = bytes;
+    }
+
+    /**
+     *Method to encrypt a message of up to vectorlength / 8 bytes.
+     *Post-Condition: returns the same ciphertext as MerkleHellmanKey.encrypt for the same key and input.
+     *Theta(N / k) table lookups and additions for N = 8 * input.length.
+     */
+    public BigInteger encrypt(byte[] input){
+        int bits = 8 * input.length;
+        MerkleHellmanKey.checkLength(input.length, vectorlength / 8);
+        long started = CipherMetrics.start();
+        BigInteger sum = BigInteger.ZERO;
+        int window = 0;
+        for(int start = 0; start < bits; start += windowBits){
+            int v = windowBits == 8 ? input[window] & 0xFF : readBits(input, start);
+            if(v != 0){
+                sum = sum.add(tables[window][v]);
+            }
+            window++;
+        }
+        CipherMetrics.record(CipherMetrics.Operation.ENCRYPT, started, input.length, sum.bitLength());
+        return sum;
+    }
+
+    /**
+     *Method to return the width of each window in bits.
+     *Theta(1), constant time complexity.
+     */
+    public int returnWindowBits(){
+        return windowBits;
+    }
+
+    /**
+     *Method to return the estimated heap footprint of the precomputed tables in bytes, including the BigIntegers they hold.
+     *Theta(1), constant time complexity.
+     */
+    public long returnTableBytes(){
+        return tableBytes;
+    }
+
+    /**
+     *Package-private method to return an upper bound on returnTableBytes() for a key without building the tables.
+     *Every entry is a sum of at most 16 elements of b, each below q, so it has at most q.bitLength() + 4 bits.
+     *Theta(1), constant time complexity.
+     */
+    static long estimateTableBytes(MerkleHellmanKey key, int windowBits){
+        long windows = (key.returnVectorLength() + windowBits - 1) / windowBits;
+        long entries = 1L << windowBits;
+        long entryBytes = KeyVector.estimateBytes(key.returnQ().bitLength() + 4);
+        return 16L + 8L * windows + windows * (16L + 8L * entries + (entries - 1) * entryBytes);
+    }
+
+    /**
+     *Private method to read windowBits bits of the message starting at bit offset start, most significant bit first.
+     *Bits past the end of the message read as zero.
+     */
+    private int readBits(byte[] input, int start){
+        int v = 0;
+        int pos = start;
+        int remaining = windowBits;
+        while(remaining > 0){
+            int byteIndex = pos >>> 3;
+            int avail = 8 - (pos & 7);
+            int take = Math.min(avail, remaining);
+            int cur = byteIndex < input.length ? input[byteIndex] & 0xFF : 0;
+            v = (v << take) | ((cur >>> (avail - take)) & ((1 << take) - 1));
+            pos += take;
+            remaining -= take;
+        }
+        return v;
+    }
+}